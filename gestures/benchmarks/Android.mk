@@ -0,0 +1,24 @@
+LOCAL_PATH:= $(call my-dir)
+
+# JMH is not part of the platform manifest, only build the benchmarks once it has been
+# added to the tree. Run them with:
+#   java -jar $ANDROID_HOST_OUT/framework/GestureHandlerBenchmarks.jar
+ifneq ($(wildcard external/jmh),)
+
+include $(CLEAR_VARS)
+
+LOCAL_SRC_FILES := $(call all-java-files-under, src)
+LOCAL_MODULE := GestureHandlerBenchmarks
+LOCAL_MODULE_TAGS := optional
+LOCAL_JAR_MANIFEST := manifest.txt
+
+LOCAL_STATIC_JAVA_LIBRARIES := \
+    GestureHandlerCore-host \
+    jmh-core
+
+LOCAL_ANNOTATION_PROCESSORS := jmh-generator-annprocess
+LOCAL_ANNOTATION_PROCESSOR_CLASSES := org.openjdk.jmh.generators.BenchmarkProcessor
+
+include $(BUILD_HOST_JAVA_LIBRARY)
+
+endif
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.GestureConfigFile;
+import org.lineageos.settings.device.core.MapConfigStore;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.SqueezeGestureEngine;
+import org.lineageos.settings.device.core.VirtualScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the gesture preferences: the full parse done once per preference change, decoding
+ * the binary config file services start from, and the snapshot read done on the sensor path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigReadBenchmark {
+
+    private MapConfigStore mStore;
+    private SqueezeGestureEngine mEngine;
+    private ByteBuffer mEncoded;
+
+    @Setup
+    public void setUp() {
+        FakeBackend backend = new FakeBackend();
+        mStore = new MapConfigStore()
+                .put(GestureConfig.SQUEEZE_SHORT_ACTION, "3")
+                .put(GestureConfig.SQUEEZE_LONG_ACTION, "1")
+                .put(GestureConfig.SQUEEZE_LONG_SQUEEZE_DURATION, "700")
+                .put(GestureConfig.KEY_SWIPE_UP, "7");
+        mEngine = new SqueezeGestureEngine(new ReplaySensorSource(), backend,
+                backend.createDispatcher(), backend, backend, backend, new VirtualScheduler(0));
+        mEngine.start(GestureConfig.parse(mStore));
+        mEncoded = ByteBuffer.wrap(GestureConfigFile.encode(mEngine.getConfig()));
+    }
+
+    @Benchmark
+    public GestureConfig parse() {
+        return GestureConfig.parse(mStore);
+    }
+
+    @Benchmark
+    public GestureConfig decodeBinary() throws IOException {
+        return GestureConfigFile.decode(mEncoded.duplicate());
+    }
+
+    @Benchmark
+    public int snapshotRead() {
+        return mEngine.getConfig().longSqueezeDuration;
+    }
+
+    @Benchmark
+    public int shortActionRead() {
+        return mEngine.gestureToAction(SqueezeGestureEngine.SHORTSQUEEZE);
+    }
+}
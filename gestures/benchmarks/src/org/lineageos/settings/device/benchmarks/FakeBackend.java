@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.ActionDispatcher;
+import org.lineageos.settings.device.core.ActionRegistry;
+import org.lineageos.settings.device.core.ActionSink;
+import org.lineageos.settings.device.core.DeviceState;
+import org.lineageos.settings.device.core.GestureWakeLock;
+import org.lineageos.settings.device.core.SysfsNode;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+
+/**
+ * Platform stand-in for the benchmarks. Every call only bumps a counter, so what is
+ * measured is the engine itself.
+ */
+public class FakeBackend implements ActionSink, DeviceState, GestureWakeLock, SysfsNode {
+
+    public boolean screenOn = true;
+    public boolean ringerSilent;
+    public boolean cameraInForeground;
+    public boolean doubleTapEnabled = true;
+
+    public int actions;
+    public int shutters;
+    public int wakeUps;
+    public int haptics;
+    public int acquisitions;
+    public int writes;
+
+    private boolean mHeld;
+
+    private final Runnable mCountAction = new Runnable() {
+        @Override
+        public void run() {
+            actions++;
+        }
+    };
+
+    /**
+     * @return ActionDispatcher with every action id bound to a counter, the way
+     * HTCSuperGestures registers them
+     */
+    public ActionDispatcher createDispatcher() {
+        ActionRegistry registry = new ActionRegistry();
+        for (int id = TouchscreenGestureConstants.ACTION_FLASHLIGHT;
+                id <= TouchscreenGestureConstants.ACTION_TURN_SCREEN_ON_OFF; id++) {
+            registry.register(id, "action " + id, ActionRegistry.FLAG_HAPTIC, mCountAction);
+        }
+        return new ActionDispatcher(registry, this, this);
+    }
+
+    @Override
+    public void triggerCameraShutter() {
+        shutters++;
+    }
+
+    @Override
+    public void wakeUp() {
+        wakeUps++;
+    }
+
+    @Override
+    public void hapticFeedback() {
+        haptics++;
+    }
+
+    @Override
+    public boolean isScreenOn() {
+        return screenOn;
+    }
+
+    @Override
+    public boolean isRingerSilent() {
+        return ringerSilent;
+    }
+
+    @Override
+    public boolean isCameraInForeground() {
+        return cameraInForeground;
+    }
+
+    @Override
+    public boolean isDoubleTapEnabled() {
+        return doubleTapEnabled;
+    }
+
+    @Override
+    public void acquire(long timeoutMs) {
+        acquisitions++;
+        mHeld = true;
+    }
+
+    @Override
+    public void release() {
+        mHeld = false;
+    }
+
+    @Override
+    public boolean isHeld() {
+        return mHeld;
+    }
+
+    @Override
+    public boolean write(String value) {
+        writes++;
+        return true;
+    }
+
+    @Override
+    public String read() {
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.ForegroundAppTracker;
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.SqueezeGestureEngine;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+import org.lineageos.settings.device.core.VirtualScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The "camera in front" decision taken on every short squeeze release. The label variant
+ * models getForegroundApp: resolve the top package to its application label and compare
+ * it against "Camera"; the binder round-trips themselves are not part of the number. The
+ * tracker variant is what SqueezeGestureService does now.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ForegroundAppBenchmark {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Map<String, String> mLabels = new HashMap<>();
+    private final ForegroundAppTracker mTracker = new ForegroundAppTracker();
+    private String mTopPackage = "org.lineageos.snap";
+
+    private VirtualScheduler mScheduler;
+    private ReplaySensorSource mSensor;
+    private FakeBackend mBackend;
+
+    @Setup
+    public void setUp() {
+        mLabels.put("org.lineageos.snap", new String("Camera"));
+        mLabels.put("com.android.chrome", "Chrome");
+
+        mBackend = new FakeBackend() {
+            @Override
+            public boolean isCameraInForeground() {
+                return resolveLabel().equals("Camera");
+            }
+        };
+        mTracker.setCameraApps(Arrays.asList("org.lineageos.snap", "org.codeaurora.snapcam"),
+                Collections.<String>emptyList());
+        mTracker.onForegroundChanged(mTopPackage, "com.android.camera.CameraActivity");
+
+        mScheduler = new VirtualScheduler(0);
+        mSensor = new ReplaySensorSource();
+        new SqueezeGestureEngine(mSensor, mBackend, mBackend.createDispatcher(), mBackend,
+                mBackend, mBackend, mScheduler)
+                .start(new GestureConfig.Builder()
+                        .setShortSqueezeAction(TouchscreenGestureConstants.ACTION_BROWSER)
+                        .build());
+    }
+
+    private String resolveLabel() {
+        final String label = mLabels.get(mTopPackage);
+        return label != null ? label : "empty";
+    }
+
+    @Benchmark
+    public boolean labelLookup() {
+        return mBackend.isCameraInForeground();
+    }
+
+    @Benchmark
+    public boolean trackerLookup() {
+        return mTracker.isCameraInForeground();
+    }
+
+    @Benchmark
+    public int shortSqueezeWithCameraInFront() {
+        mSensor.deliver(mScheduler.elapsedRealtime() * NANOS_PER_MILLI, 1.0f, 200f);
+        mScheduler.advanceBy(300);
+        mSensor.deliver(mScheduler.elapsedRealtime() * NANOS_PER_MILLI, 2.0f, 0f);
+        mScheduler.advanceBy(1000);
+        return mBackend.shutters;
+    }
+}
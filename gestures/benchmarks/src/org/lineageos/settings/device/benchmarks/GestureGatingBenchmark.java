@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.ScreenGestureEngine;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unregister/register per gesture against the in-process gate, on a HubSensorSource.
+ * singleGesture is the per-gesture cost; burst sends gestures BURST_SPACING_NS apart and
+ * reports how many of them never reached the listener.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GestureGatingBenchmark {
+
+    private static final int BURST_SIZE = 4;
+    private static final long BURST_SPACING_NS = 80 * 1000000L;
+    private static final long IDLE_NS = 1000 * 1000000L;
+
+    @Param({"legacy", "gated"})
+    public String mode;
+
+    private FakeBackend mBackend;
+    private HubSensorSource mSensor;
+    private long mTimestamp;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Losses {
+        public int gestures;
+        public int lost;
+        public int transactions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            gestures = 0;
+            lost = 0;
+            transactions = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mBackend = new FakeBackend();
+        mSensor = new HubSensorSource();
+        GestureConfig config = new GestureConfig.Builder()
+                .setSwipeUpAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .build();
+        if ("legacy".equals(mode)) {
+            new LegacyScreenGestureListener(mSensor, mBackend.createDispatcher(), config)
+                    .start();
+        } else {
+            ScreenGestureEngine engine = new ScreenGestureEngine(mSensor, mBackend,
+                    mBackend.createDispatcher(), mBackend, mBackend);
+            engine.start(config);
+            engine.arm();
+        }
+        mTimestamp = IDLE_NS;
+    }
+
+    @Benchmark
+    public int singleGesture(Losses losses) {
+        mTimestamp += IDLE_NS;
+        return deliver(losses);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int burst(Losses losses) {
+        mTimestamp += IDLE_NS;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            deliver(losses);
+            mTimestamp += BURST_SPACING_NS;
+        }
+        return mBackend.actions;
+    }
+
+    private int deliver(Losses losses) {
+        final int lost = mSensor.lost;
+        final int transactions = mSensor.transactions;
+        mSensor.deliver(mTimestamp, ScreenGestureEngine.SWIPE_UP, 0f);
+        losses.gestures++;
+        losses.lost += mSensor.lost - lost;
+        losses.transactions += mSensor.transactions - transactions;
+        return mBackend.actions;
+    }
+}
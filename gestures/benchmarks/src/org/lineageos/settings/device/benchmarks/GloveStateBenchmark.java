@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lineagehw HighTouchSensitivity queries on a host file standing in for glove_setting.
+ * The uncached variants do what FileUtils does for every call; the cached ones are the
+ * volatile field reads left once the state is kept in memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GloveStateBenchmark {
+
+    private static final int UNKNOWN = -1;
+    private static final int YES = 1;
+
+    private File mFile;
+    private volatile int mSupported = UNKNOWN;
+    private volatile int mEnabled = UNKNOWN;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("glove_setting", null);
+        try (FileWriter writer = new FileWriter(mFile)) {
+            writer.write("1\n");
+        }
+        mSupported = mFile.canRead() && mFile.canWrite() ? YES : 0;
+        mEnabled = "1".equals(readOneLine()) ? YES : 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private String readOneLine() {
+        try (BufferedReader reader = new BufferedReader(new FileReader(mFile), 512)) {
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public boolean isSupportedUncached() {
+        return mFile.canRead() && mFile.canWrite();
+    }
+
+    @Benchmark
+    public boolean isEnabledUncached() {
+        return "1".equals(readOneLine());
+    }
+
+    @Benchmark
+    public boolean isSupportedCached() {
+        return mSupported == YES;
+    }
+
+    @Benchmark
+    public boolean isEnabledCached() {
+        return mEnabled == YES;
+    }
+}
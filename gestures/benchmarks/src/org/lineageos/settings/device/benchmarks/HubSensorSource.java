@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.SensorSource;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Models the sensor hub behind SensorManager: every register or unregister costs a binder
+ * round trip, and a new registration only starts reporting once the hub has been
+ * reconfigured. Events reported before that are lost, as they are on device.
+ */
+public class HubSensorSource implements SensorSource {
+
+    public static final int BINDER_TOKENS = 2000;
+    public static final long REGISTER_LATENCY_NS = 100 * 1000000L;
+
+    public int transactions;
+    public int lost;
+
+    private Listener mListener;
+    private long mNow;
+    private long mActiveFrom;
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void register(Listener listener) {
+        Blackhole.consumeCPU(BINDER_TOKENS);
+        transactions++;
+        mListener = listener;
+        mActiveFrom = mNow + REGISTER_LATENCY_NS;
+    }
+
+    @Override
+    public void unregister(Listener listener) {
+        Blackhole.consumeCPU(BINDER_TOKENS);
+        transactions++;
+        mListener = null;
+    }
+
+    public void deliver(long timestamp, float value0, float value1) {
+        mNow = timestamp;
+        if (mListener == null || timestamp < mActiveFrom) {
+            lost++;
+            return;
+        }
+        mListener.onSensorEvent(timestamp, value0, value1);
+    }
+}
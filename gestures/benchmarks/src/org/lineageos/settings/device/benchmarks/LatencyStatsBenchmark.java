@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.GestureJournal;
+import org.lineageos.settings.device.core.GestureLatencyStats;
+import org.lineageos.settings.device.core.GestureTrace;
+import org.lineageos.settings.device.core.LatencyHistogram;
+import org.lineageos.settings.device.core.RecordingSensorSource;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.ScreenGestureEngine;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+import org.lineageos.settings.device.core.VirtualScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What keeping the latency histograms on costs: one record, and a whole screen gesture
+ * without stats, with stats, and with stats and the journal attached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LatencyStatsBenchmark {
+
+    @Param({"off", "stats", "journal"})
+    public String stats;
+
+    private final LatencyHistogram mHistogram = new LatencyHistogram();
+    private ReplaySensorSource mSensor;
+    private long mTimestamp;
+    private long mSample;
+
+    @Setup
+    public void setUp() {
+        FakeBackend backend = new FakeBackend();
+        mSensor = new ReplaySensorSource();
+        final boolean journaled = "journal".equals(stats);
+        final GestureJournal journal = new GestureJournal(1024);
+        ScreenGestureEngine engine = new ScreenGestureEngine(
+                journaled ? new RecordingSensorSource(mSensor, journal,
+                        GestureTrace.SENSOR_GESTURE_MOTION) : mSensor,
+                backend, backend.createDispatcher(), backend, backend);
+        engine.start(new GestureConfig.Builder()
+                .setSwipeUpAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .build());
+        engine.arm();
+        if (!"off".equals(stats)) {
+            GestureLatencyStats latencyStats =
+                    ScreenGestureEngine.createLatencyStats(new VirtualScheduler(0));
+            if (journaled) {
+                latencyStats.setJournal(journal, GestureTrace.SENSOR_GESTURE_MOTION);
+            }
+            engine.setLatencyStats(latencyStats);
+        }
+    }
+
+    @Benchmark
+    public long record() {
+        mSample = (mSample * 31 + 7) & 0xffffff;
+        mHistogram.record(mSample);
+        return mHistogram.getCount();
+    }
+
+    @Benchmark
+    public void swipeUpEvent() {
+        mTimestamp += ScreenGestureEngine.GESTURE_COOLDOWN_NS;
+        mSensor.deliver(mTimestamp, ScreenGestureEngine.SWIPE_UP, 0f);
+    }
+}
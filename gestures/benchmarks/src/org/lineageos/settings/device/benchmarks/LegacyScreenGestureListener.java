@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.ActionDispatcher;
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.ScreenGestureEngine;
+import org.lineageos.settings.device.core.SensorSource;
+
+/**
+ * The pre-gating ScreenGestureService behaviour, kept as the baseline: unregister on every
+ * gesture and register again once its action has run.
+ */
+public class LegacyScreenGestureListener implements SensorSource.Listener {
+
+    private final SensorSource mSensor;
+    private final ActionDispatcher mDispatcher;
+    private final GestureConfig mConfig;
+
+    public LegacyScreenGestureListener(SensorSource sensor, ActionDispatcher dispatcher,
+            GestureConfig config) {
+        mSensor = sensor;
+        mDispatcher = dispatcher;
+        mConfig = config;
+    }
+
+    public void start() {
+        mSensor.register(this);
+    }
+
+    @Override
+    public void onSensorEvent(long timestamp, float value0, float value1) {
+        mSensor.unregister(this);
+        if ((int) value0 == ScreenGestureEngine.SWIPE_UP) {
+            mDispatcher.dispatch(mConfig.swipeUpAction);
+        }
+        mSensor.register(this);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.MapConfigStore;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.ScreenGestureEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Screen off to armed: building the engine from the preferences on every screen off, as the
+ * per toggle service did, against arming the engine that is already running. Only the host
+ * side part is covered; on the device the first also pays for the service and its system
+ * service lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScreenArmBenchmark {
+
+    private FakeBackend mBackend;
+    private MapConfigStore mStore;
+    private ReplaySensorSource mSensor;
+    private ScreenGestureEngine mEngine;
+
+    @Setup
+    public void setUp() {
+        mBackend = new FakeBackend();
+        mStore = new MapConfigStore()
+                .put(GestureConfig.KEY_SWIPE_UP, "7")
+                .put(GestureConfig.KEY_SWIPE_LEFT, "4");
+        mSensor = new ReplaySensorSource();
+        mEngine = new ScreenGestureEngine(mSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend);
+        mEngine.start(GestureConfig.parse(mStore));
+    }
+
+    @Benchmark
+    public boolean recreate() {
+        ScreenGestureEngine engine = new ScreenGestureEngine(mSensor, mBackend,
+                mBackend.createDispatcher(), mBackend, mBackend);
+        engine.start(GestureConfig.parse(mStore));
+        engine.arm();
+        engine.stop();
+        return engine.isArmed();
+    }
+
+    @Benchmark
+    public boolean rearm() {
+        mEngine.arm();
+        mEngine.disarm();
+        return mEngine.isArmed();
+    }
+}
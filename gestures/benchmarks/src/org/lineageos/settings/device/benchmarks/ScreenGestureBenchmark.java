@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.ScreenGestureEngine;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScreenGestureService dispatch: the sensor event, gestureToAction and handleGestureAction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScreenGestureBenchmark {
+
+    private FakeBackend mBackend;
+    private ReplaySensorSource mSensor;
+    private ScreenGestureEngine mEngine;
+    private long mTimestamp;
+
+    @Setup
+    public void setUp() {
+        mBackend = new FakeBackend();
+        mSensor = new ReplaySensorSource();
+        mEngine = new ScreenGestureEngine(mSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend);
+        mEngine.start(new GestureConfig.Builder()
+                .setSwipeUpAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .setSwipeLeftAction(TouchscreenGestureConstants.ACTION_PREVIOUS_TRACK)
+                .build());
+        mEngine.arm();
+    }
+
+    @Benchmark
+    public int swipeUpEvent() {
+        mTimestamp += ScreenGestureEngine.GESTURE_COOLDOWN_NS;
+        mSensor.deliver(mTimestamp, ScreenGestureEngine.SWIPE_UP, 0f);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int doubleTapEvent() {
+        mTimestamp += ScreenGestureEngine.GESTURE_COOLDOWN_NS;
+        mSensor.deliver(mTimestamp, ScreenGestureEngine.DOUBLE_TAP, 0f);
+        return mBackend.wakeUps;
+    }
+
+    @Benchmark
+    public int filteredEvent() {
+        mSensor.deliver(mTimestamp, ScreenGestureEngine.SWIPE_UP, 0f);
+        return mEngine.getFilteredCount();
+    }
+
+    @Benchmark
+    public int gestureToAction() {
+        return mEngine.gestureToAction(ScreenGestureEngine.SWIPE_LEFT);
+    }
+
+    @Benchmark
+    public int handleGestureAction() {
+        mEngine.handleGestureAction(TouchscreenGestureConstants.ACTION_PREVIOUS_TRACK);
+        return mBackend.actions;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.ReplaySensorSource;
+import org.lineageos.settings.device.core.SqueezeGestureEngine;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+import org.lineageos.settings.device.core.VirtualScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full squeeze per op, from the press event to the action (or the discard).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqueezeEngineBenchmark {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private FakeBackend mBackend;
+    private VirtualScheduler mScheduler;
+    private ReplaySensorSource mSensor;
+    private SqueezeGestureEngine mEngine;
+    private ReplaySensorSource mAllGesturesSensor;
+
+    @Setup
+    public void setUp() {
+        mBackend = new FakeBackend();
+        mScheduler = new VirtualScheduler(0);
+        mSensor = new ReplaySensorSource();
+        mEngine = new SqueezeGestureEngine(mSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend, mBackend, mScheduler);
+        mEngine.start(new GestureConfig.Builder()
+                .setShortSqueezeAction(TouchscreenGestureConstants.ACTION_BROWSER)
+                .setLongSqueezeAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .build());
+
+        // Double and hold bound as well, so short and long have to wait for them
+        mAllGesturesSensor = new ReplaySensorSource();
+        new SqueezeGestureEngine(mAllGesturesSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend, mBackend, mScheduler).start(new GestureConfig.Builder()
+                .setShortSqueezeAction(TouchscreenGestureConstants.ACTION_BROWSER)
+                .setLongSqueezeAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .setDoubleSqueezeAction(TouchscreenGestureConstants.ACTION_CAMERA)
+                .setHoldSqueezeAction(TouchscreenGestureConstants.ACTION_PLAY_PAUSE_MUSIC)
+                .build());
+    }
+
+    private void squeeze(long durationMs) {
+        squeeze(mSensor, durationMs);
+        mScheduler.advanceBy(1000);
+    }
+
+    private void squeeze(ReplaySensorSource sensor, long durationMs) {
+        sensor.deliver(mScheduler.elapsedRealtime() * NANOS_PER_MILLI, 1.0f, 200f);
+        mScheduler.advanceBy(durationMs);
+        sensor.deliver(mScheduler.elapsedRealtime() * NANOS_PER_MILLI, 2.0f, 0f);
+    }
+
+    @Benchmark
+    public int shortSqueeze() {
+        squeeze(300);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int longSqueeze() {
+        squeeze(900);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int tooShortSqueeze() {
+        squeeze(50);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int doubleSqueeze() {
+        squeeze(mAllGesturesSensor, 200);
+        mScheduler.advanceBy(150);
+        squeeze(mAllGesturesSensor, 200);
+        mScheduler.advanceBy(1000);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int holdSqueeze() {
+        squeeze(mAllGesturesSensor, 1500);
+        mScheduler.advanceBy(1000);
+        return mBackend.actions;
+    }
+
+    @Benchmark
+    public int shortSqueezeScreenOff() {
+        mBackend.screenOn = false;
+        squeeze(300);
+        return mBackend.acquisitions;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.benchmarks;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.GestureConfigFile;
+import org.lineageos.settings.device.core.MapConfigStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The configuration a service starts with: loading and parsing the preferences XML the way
+ * SharedPreferences does before the first value can be read, against reading the binary
+ * config file. Both come from the page cache here; on the device the XML path also pays for
+ * the SharedPreferences load thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StartupConfigBenchmark {
+
+    private File mDir;
+    private File mPrefsFile;
+    private File mConfigFile;
+    private XMLInputFactory mXmlFactory;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("startup").toFile();
+        mPrefsFile = new File(mDir, "prefs.xml");
+        try (Writer out = new FileWriter(mPrefsFile)) {
+            out.write("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+            writeString(out, GestureConfig.SQUEEZE_SHORT_ACTION, "3");
+            writeString(out, GestureConfig.SQUEEZE_LONG_ACTION, "1");
+            writeString(out, GestureConfig.SQUEEZE_DOUBLE_ACTION, "0");
+            writeString(out, GestureConfig.SQUEEZE_HOLD_ACTION, "0");
+            writeString(out, GestureConfig.SQUEEZE_LONG_SQUEEZE_DURATION, "700");
+            writeString(out, GestureConfig.SQUEEZE_CALIBRATION, "0");
+            writeString(out, GestureConfig.KEY_SWIPE_UP, "7");
+            writeString(out, GestureConfig.KEY_SWIPE_LEFT, "4");
+            writeString(out, GestureConfig.KEY_SWIPE_RIGHT, "5");
+            writeString(out, GestureConfig.KEY_DOUBLE_SWIPE_DOWN, "0");
+            out.write("    <int name=\"" + GestureConfig.SQUEEZE_FORCE + "\" value=\"150\" />\n");
+            writeBoolean(out, GestureConfig.SQUEEZE_GESTURE_ENABLE);
+            writeBoolean(out, GestureConfig.SQUEEZE_HAPTIC_FEEDBACK_ENABLED);
+            writeBoolean(out, GestureConfig.SQUEEZE_HAPTIC_FEEDBACK_IGNORE_RINGER);
+            writeBoolean(out, GestureConfig.SCREEN_HAPTIC_FEEDBACK_ENABLED);
+            writeBoolean(out, GestureConfig.SCREEN_HAPTIC_FEEDBACK_IGNORE_RINGER);
+            out.write("</map>\n");
+        }
+        mConfigFile = new File(mDir, "gesture_config.bin");
+        mXmlFactory = XMLInputFactory.newInstance();
+        GestureConfigFile.write(mConfigFile, preferencesXml());
+    }
+
+    @TearDown
+    public void tearDown() {
+        mPrefsFile.delete();
+        mConfigFile.delete();
+        mDir.delete();
+    }
+
+    @Benchmark
+    public GestureConfig preferencesXml() throws IOException {
+        final MapConfigStore store = new MapConfigStore();
+        try (InputStream in = new FileInputStream(mPrefsFile)) {
+            final XMLStreamReader parser = mXmlFactory.createXMLStreamReader(in);
+            while (parser.hasNext()) {
+                if (parser.next() == XMLStreamReader.START_ELEMENT
+                        && !"map".equals(parser.getLocalName())) {
+                    final String name = parser.getAttributeValue(null, "name");
+                    final String value = parser.getAttributeValue(null, "value");
+                    store.put(name, value != null ? value : parser.getElementText());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return GestureConfig.parse(store);
+    }
+
+    @Benchmark
+    public GestureConfig binaryFile() throws IOException {
+        return GestureConfigFile.read(mConfigFile);
+    }
+
+    private static void writeString(Writer out, String name, String value) throws IOException {
+        out.write("    <string name=\"" + name + "\">" + value + "</string>\n");
+    }
+
+    private static void writeBoolean(Writer out, String name) throws IOException {
+        out.write("    <boolean name=\"" + name + "\" value=\"true\" />\n");
+    }
+}
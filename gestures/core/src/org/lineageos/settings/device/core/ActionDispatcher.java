@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs registry actions, applying their wake and screen requirements. FLAG_OFFLOAD actions
+ * run on the worker when one is set; they are queued in dispatch order, and the listener
+ * hears about each once it has run, so callers can keep the device awake until then.
+ */
+public class ActionDispatcher {
+
+    private static final Logger LOG = Logger.getLogger("GestureService");
+
+    // Offloaded actions queued on the worker at most, a stuck worker drops the rest
+    private static final int MAX_QUEUED = 16;
+
+    public interface Listener {
+        /**
+         * An offloaded action has finished running. Called on the worker.
+         */
+        void onActionDone(ActionRegistry.Action action);
+    }
+
+    private final ActionRegistry mRegistry;
+    private final ActionSink mActionSink;
+    private final DeviceState mDeviceState;
+    private volatile GestureLatencyStats mLatencyStats;
+    private GestureScheduler mWorker;
+    private volatile Listener mListener;
+
+    // Ring of the offloaded actions posted to the worker, which runs them in this order
+    private final ActionRegistry.Action[] mQueue = new ActionRegistry.Action[MAX_QUEUED];
+    // GestureLatencyStats slot of each queued action
+    private final int[] mQueueSlots = new int[MAX_QUEUED];
+    private int mQueueHead;
+    private int mQueueCount;
+
+    private final Runnable mRunQueued = new Runnable() {
+        @Override
+        public void run() {
+            final ActionRegistry.Action action;
+            final int slot;
+            synchronized (mQueue) {
+                action = mQueue[mQueueHead];
+                slot = mQueueSlots[mQueueHead];
+                mQueue[mQueueHead] = null;
+                mQueueHead = (mQueueHead + 1) % MAX_QUEUED;
+                mQueueCount--;
+            }
+            final GestureLatencyStats stats = mLatencyStats;
+            if (stats != null) {
+                stats.onQueuedActionStart(slot);
+            }
+            try {
+                action.run();
+            } finally {
+                if (stats != null) {
+                    stats.onQueuedActionEnd(slot);
+                }
+                final Listener listener = mListener;
+                if (listener != null) {
+                    listener.onActionDone(action);
+                }
+            }
+        }
+    };
+
+    public ActionDispatcher(ActionRegistry registry, ActionSink actionSink,
+            DeviceState deviceState) {
+        mRegistry = registry;
+        mActionSink = actionSink;
+        mDeviceState = deviceState;
+    }
+
+    public void setLatencyStats(GestureLatencyStats stats) {
+        mLatencyStats = stats;
+    }
+
+    /**
+     * @param worker where FLAG_OFFLOAD actions run; without one they run inline like the rest
+     */
+    public void setWorker(GestureScheduler worker) {
+        mWorker = worker;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return boolean true if a dispatched action only runs later on the worker, the listener
+     * is told when it is done
+     */
+    public boolean isOffloaded(ActionRegistry.Action action) {
+        return mWorker != null && action.isOffloaded();
+    }
+
+    /**
+     * @return Action the action that was run or queued, null if there was nothing to run
+     */
+    public ActionRegistry.Action dispatch(int id) {
+        final ActionRegistry.Action action = mRegistry.get(id);
+        if (action == null) {
+            return null;
+        }
+        if (action.needsScreenOn() && !mDeviceState.isScreenOn()) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Cannot " + action.name + " while screen is off");
+            }
+            return null;
+        }
+        final GestureLatencyStats stats = mLatencyStats;
+        if (isOffloaded(action)) {
+            synchronized (mQueue) {
+                if (mQueueCount == MAX_QUEUED) {
+                    LOG.warning("Worker is not keeping up, dropping " + action.name);
+                    return null;
+                }
+                final int tail = (mQueueHead + mQueueCount) % MAX_QUEUED;
+                mQueue[tail] = action;
+                mQueueSlots[tail] = stats != null ? stats.onActionQueued(action.id) : -1;
+                mQueueCount++;
+            }
+            if (action.needsWake()) {
+                mActionSink.wakeUp();
+            }
+            mWorker.postDelayed(mRunQueued, 0);
+            return action;
+        }
+        if (action.needsWake()) {
+            mActionSink.wakeUp();
+        }
+        if (stats != null) {
+            stats.onActionStart(action.id);
+            action.run();
+            stats.onActionEnd();
+        } else {
+            action.run();
+        }
+        return action;
+    }
+}
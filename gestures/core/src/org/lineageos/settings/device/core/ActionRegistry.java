@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Maps each gesture action id to its bound action and metadata. Filled once when a service
+ * starts, after that a lookup is a single array index.
+ */
+public class ActionRegistry {
+
+    public static final int FLAG_NEEDS_WAKE = 1 << 0;
+    public static final int FLAG_NEEDS_SCREEN_ON = 1 << 1;
+    public static final int FLAG_HAPTIC = 1 << 2;
+    // Makes slow binder calls, run on the dispatcher's worker
+    public static final int FLAG_OFFLOAD = 1 << 3;
+
+    private static final int MAX_ACTIONS = 32;
+
+    public static final class Action {
+        public final int id;
+        public final String name;
+        public final int flags;
+        private final Runnable mRunnable;
+
+        private Action(int id, String name, int flags, Runnable runnable) {
+            this.id = id;
+            this.name = name;
+            this.flags = flags;
+            mRunnable = runnable;
+        }
+
+        public boolean needsWake() {
+            return (flags & FLAG_NEEDS_WAKE) != 0;
+        }
+
+        public boolean needsScreenOn() {
+            return (flags & FLAG_NEEDS_SCREEN_ON) != 0;
+        }
+
+        public boolean hasHaptic() {
+            return (flags & FLAG_HAPTIC) != 0;
+        }
+
+        public boolean isOffloaded() {
+            return (flags & FLAG_OFFLOAD) != 0;
+        }
+
+        public void run() {
+            mRunnable.run();
+        }
+    }
+
+    private final Action[] mActions = new Action[MAX_ACTIONS];
+
+    /**
+     * Binds an action id, replacing any previous binding.
+     */
+    public ActionRegistry register(int id, String name, int flags, Runnable runnable) {
+        if (id <= TouchscreenGestureConstants.ACTION_DO_NOTHING || id >= MAX_ACTIONS) {
+            throw new IllegalArgumentException("Invalid action id " + id);
+        }
+        mActions[id] = new Action(id, name, flags, runnable);
+        return this;
+    }
+
+    /**
+     * @return Action the bound action, or null for ACTION_DO_NOTHING and unknown ids
+     */
+    public Action get(int id) {
+        return id >= 0 && id < MAX_ACTIONS ? mActions[id] : null;
+    }
+}
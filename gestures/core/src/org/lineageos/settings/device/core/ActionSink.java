@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Receives what the gesture engines decide to do besides registry actions.
+ */
+public interface ActionSink {
+
+    /**
+     * Presses the shutter of the camera app currently in front.
+     */
+    void triggerCameraShutter();
+
+    void wakeUp();
+
+    void hapticFeedback();
+}
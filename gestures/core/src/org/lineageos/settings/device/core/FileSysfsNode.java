@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+/**
+ * SysfsNode backed by a file below a configurable root, "/" on device and a temporary
+ * directory on a host.
+ *
+ * Writes of the value already in the node are skipped, and with a scheduler a burst of
+ * writes collapses into the last one. The descriptor stays open between writes; if the
+ * kernel rejects a write on it the node is reopened once before the write counts as failed.
+ */
+public class FileSysfsNode implements SysfsNode {
+
+    private static final Logger LOG = Logger.getLogger("FileSysfsNode");
+
+    private final File mFile;
+    private final GestureScheduler mScheduler;
+    private final long mCoalesceMs;
+
+    private FileChannel mChannel;
+    private String mLastWritten;
+    private String mPending;
+
+    private int mWrites;
+    private int mSkipped;
+    private int mCoalesced;
+    private int mReopens;
+    private int mFailures;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public FileSysfsNode(File root, String path) {
+        this(root, path, null, 0);
+    }
+
+    /**
+     * @param coalesceMs how long to wait for a newer value before writing, 0 to write
+     * right away
+     */
+    public FileSysfsNode(File root, String path, GestureScheduler scheduler, long coalesceMs) {
+        mFile = new File(root, path);
+        mScheduler = scheduler;
+        mCoalesceMs = scheduler != null ? coalesceMs : 0;
+    }
+
+    public String getPath() {
+        return mFile.getPath();
+    }
+
+    /**
+     * @return boolean false if the value could not be written. A coalesced write is only
+     * queued here, so it always succeeds; its failure shows up in the counters.
+     */
+    @Override
+    public synchronized boolean write(String value) {
+        if (mPending == null && value.equals(mLastWritten)) {
+            mSkipped++;
+            return true;
+        }
+        if (mCoalesceMs <= 0) {
+            return writeNow(value);
+        }
+        if (mPending != null) {
+            mCoalesced++;
+            mScheduler.removeCallbacks(mFlushRunnable);
+        }
+        if (value.equals(mLastWritten)) {
+            // Back to what the node already holds, drop the queued value
+            mPending = null;
+            return true;
+        }
+        mPending = value;
+        mScheduler.postDelayed(mFlushRunnable, mCoalesceMs);
+        return true;
+    }
+
+    /**
+     * Writes the queued value, if any, without waiting any longer.
+     */
+    public synchronized void flush() {
+        if (mPending != null) {
+            mScheduler.removeCallbacks(mFlushRunnable);
+            final String value = mPending;
+            mPending = null;
+            writeNow(value);
+        }
+    }
+
+    @Override
+    public String read() {
+        try (BufferedReader reader = new BufferedReader(new FileReader(mFile), 512)) {
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        closeChannel();
+    }
+
+    private boolean writeNow(String value) {
+        final ByteBuffer buffer =
+                ByteBuffer.wrap((value + "\n").getBytes(StandardCharsets.US_ASCII));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                if (mChannel == null) {
+                    mChannel = new FileOutputStream(mFile).getChannel();
+                    if (attempt > 0) {
+                        mReopens++;
+                    }
+                }
+                buffer.rewind();
+                mChannel.write(buffer, 0);
+                // No-op on sysfs, drops a longer old value on a regular file
+                mChannel.truncate(buffer.limit());
+                mWrites++;
+                mLastWritten = value;
+                return true;
+            } catch (IOException e) {
+                closeChannel();
+            }
+        }
+        mFailures++;
+        mLastWritten = null;
+        LOG.warning("Failed to write " + value + " to " + mFile);
+        return false;
+    }
+
+    private void closeChannel() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            mChannel = null;
+        }
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailures;
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("  " + mFile + ": writes=" + mWrites + " skipped=" + mSkipped
+                + " coalesced=" + mCoalesced + " reopens=" + mReopens
+                + " failures=" + mFailures + " last=" + mLastWritten);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the top activity in memory so the gesture path can ask what is in front without
+ * any IPC. Updated by the platform observer whenever the task stack changes.
+ */
+public class ForegroundAppTracker {
+
+    private static final class Top {
+        final String packageName;
+        final String className;
+
+        Top(String packageName, String className) {
+            this.packageName = packageName;
+            this.className = className;
+        }
+    }
+
+    private static final Top NONE = new Top(null, null);
+
+    private volatile Top mTop = NONE;
+    private volatile Set<String> mCameraPackages = Collections.emptySet();
+    private volatile Set<String> mCameraComponents = Collections.emptySet();
+
+    public void onForegroundChanged(String packageName, String className) {
+        final Top top = mTop;
+        if (equals(top.packageName, packageName) && equals(top.className, className)) {
+            return;
+        }
+        mTop = packageName != null ? new Top(packageName, className) : NONE;
+    }
+
+    /**
+     * @param packages packages that count as a camera no matter which activity is in front
+     * @param components fully qualified activity class names that count as a camera
+     */
+    public void setCameraApps(Collection<String> packages, Collection<String> components) {
+        mCameraPackages = Collections.unmodifiableSet(new HashSet<>(packages));
+        mCameraComponents = Collections.unmodifiableSet(new HashSet<>(components));
+    }
+
+    public String getTopPackage() {
+        return mTop.packageName;
+    }
+
+    public String getTopClassName() {
+        return mTop.className;
+    }
+
+    public boolean isCameraInForeground() {
+        final Top top = mTop;
+        if (top.packageName == null) {
+            return false;
+        }
+        return mCameraPackages.contains(top.packageName)
+                || (top.className != null && mCameraComponents.contains(top.className));
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
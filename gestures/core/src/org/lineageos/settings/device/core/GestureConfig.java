@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Immutable snapshot of every gesture preference, parsed and validated in one go. The
+ * engines publish it through a single volatile field, so the sensor path never parses and
+ * always sees a consistent set of values.
+ */
+public final class GestureConfig {
+
+    public static final String SQUEEZE_FORCE = "squeeze_force";
+    public static final String SQUEEZE_GESTURE_ENABLE = "squeeze_enabled";
+    public static final String SQUEEZE_LONG_ACTION = "squeeze_long";
+    public static final String SQUEEZE_LONG_SQUEEZE_DURATION = "long_squeeze_duration";
+    public static final String SQUEEZE_SHORT_ACTION = "squeeze_short";
+    public static final String SQUEEZE_DOUBLE_ACTION = "squeeze_double";
+    public static final String SQUEEZE_HOLD_ACTION = "squeeze_hold";
+    public static final String SQUEEZE_HAPTIC_FEEDBACK_ENABLED = "squeeze_haptic_feedback";
+    public static final String SQUEEZE_CALIBRATION = "squeeze_calibration";
+    public static final String SQUEEZE_HAPTIC_FEEDBACK_IGNORE_RINGER =
+            "squeeze_haptic_ignore_ringer";
+
+    public static final String KEY_DOUBLE_SWIPE_DOWN = "double_swipe_down_action_key";
+    public static final String KEY_SWIPE_LEFT = "swipe_left_action_key";
+    public static final String KEY_SWIPE_RIGHT = "swipe_right_action_key";
+    public static final String KEY_SWIPE_UP = "swipe_up_action_key";
+    public static final String SCREEN_HAPTIC_FEEDBACK_ENABLED = "screen_haptic_feedback";
+    public static final String SCREEN_HAPTIC_FEEDBACK_IGNORE_RINGER =
+            "screen_haptic_ignore_ringer";
+
+    public static final int SQUEEZE_FORCE_DEFAULT = 150;
+    public static final int SQUEEZE_FORCE_MAX = 200;
+    /* squeeze_force is written to edge_thd with this offset */
+    public static final int SQUEEZE_FORCE_OFFSET = 100;
+
+    public static final int LONG_SQUEEZE_DURATION_DEFAULT = 700;
+    public static final int LONG_SQUEEZE_DURATION_MIN = 200;
+    public static final int LONG_SQUEEZE_DURATION_MAX = 3000;
+
+    /* Values of squeeze_calibration, see SqueezeCalibrator */
+    public static final int CALIBRATION_OFF = 0;
+    public static final int CALIBRATION_SUGGEST = 1;
+    public static final int CALIBRATION_APPLY = 2;
+
+    public static final GestureConfig DEFAULT = new Builder().build();
+
+    public final boolean squeezeEnabled;
+    public final int squeezeForce;
+    public final int shortSqueezeAction;
+    public final int longSqueezeAction;
+    public final int doubleSqueezeAction;
+    public final int holdSqueezeAction;
+    public final int longSqueezeDuration;
+    public final boolean squeezeHapticFeedback;
+    public final boolean squeezeHapticIgnoreRinger;
+    public final int squeezeCalibration;
+
+    public final int swipeUpAction;
+    public final int swipeDownAction;
+    public final int swipeLeftAction;
+    public final int swipeRightAction;
+    public final boolean screenHapticFeedback;
+    public final boolean screenHapticIgnoreRinger;
+
+    private GestureConfig(Builder b) {
+        squeezeEnabled = b.mSqueezeEnabled;
+        squeezeForce = b.mSqueezeForce;
+        shortSqueezeAction = b.mShortSqueezeAction;
+        longSqueezeAction = b.mLongSqueezeAction;
+        doubleSqueezeAction = b.mDoubleSqueezeAction;
+        holdSqueezeAction = b.mHoldSqueezeAction;
+        longSqueezeDuration = b.mLongSqueezeDuration;
+        squeezeHapticFeedback = b.mSqueezeHapticFeedback;
+        squeezeHapticIgnoreRinger = b.mSqueezeHapticIgnoreRinger;
+        squeezeCalibration = b.mSqueezeCalibration;
+        swipeUpAction = b.mSwipeUpAction;
+        swipeDownAction = b.mSwipeDownAction;
+        swipeLeftAction = b.mSwipeLeftAction;
+        swipeRightAction = b.mSwipeRightAction;
+        screenHapticFeedback = b.mScreenHapticFeedback;
+        screenHapticIgnoreRinger = b.mScreenHapticIgnoreRinger;
+    }
+
+    /**
+     * @return int the value written to the edge_thd node
+     */
+    public int getForceThreshold() {
+        return squeezeForce + SQUEEZE_FORCE_OFFSET;
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /**
+     * Reads every gesture preference.
+     *
+     * @throws IllegalArgumentException if any value is malformed or out of range, in which
+     * case nothing of the new values should be applied
+     */
+    public static GestureConfig parse(ConfigStore store) {
+        return new Builder()
+                .setSqueezeEnabled(store.getBoolean(SQUEEZE_GESTURE_ENABLE, true))
+                .setSqueezeForce(store.getInt(SQUEEZE_FORCE, SQUEEZE_FORCE_DEFAULT))
+                .setShortSqueezeAction(parseInt(store, SQUEEZE_SHORT_ACTION,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setLongSqueezeAction(parseInt(store, SQUEEZE_LONG_ACTION,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setDoubleSqueezeAction(parseInt(store, SQUEEZE_DOUBLE_ACTION,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setHoldSqueezeAction(parseInt(store, SQUEEZE_HOLD_ACTION,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setLongSqueezeDuration(parseInt(store, SQUEEZE_LONG_SQUEEZE_DURATION,
+                        LONG_SQUEEZE_DURATION_DEFAULT))
+                .setSqueezeHapticFeedback(store.getBoolean(SQUEEZE_HAPTIC_FEEDBACK_ENABLED, true))
+                .setSqueezeHapticIgnoreRinger(
+                        store.getBoolean(SQUEEZE_HAPTIC_FEEDBACK_IGNORE_RINGER, true))
+                .setSqueezeCalibration(parseInt(store, SQUEEZE_CALIBRATION, CALIBRATION_OFF))
+                .setSwipeUpAction(parseInt(store, KEY_SWIPE_UP,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setSwipeDownAction(parseInt(store, KEY_DOUBLE_SWIPE_DOWN,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setSwipeLeftAction(parseInt(store, KEY_SWIPE_LEFT,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setSwipeRightAction(parseInt(store, KEY_SWIPE_RIGHT,
+                        TouchscreenGestureConstants.ACTION_DO_NOTHING))
+                .setScreenHapticFeedback(store.getBoolean(SCREEN_HAPTIC_FEEDBACK_ENABLED, true))
+                .setScreenHapticIgnoreRinger(
+                        store.getBoolean(SCREEN_HAPTIC_FEEDBACK_IGNORE_RINGER, true))
+                .build();
+    }
+
+    private static int parseInt(ConfigStore store, String key, int defValue) {
+        final String value = store.getString(key, null);
+        if (value == null) {
+            return defValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GestureConfig{squeezeEnabled=" + squeezeEnabled
+                + " squeezeForce=" + squeezeForce
+                + " shortSqueezeAction=" + shortSqueezeAction
+                + " longSqueezeAction=" + longSqueezeAction
+                + " doubleSqueezeAction=" + doubleSqueezeAction
+                + " holdSqueezeAction=" + holdSqueezeAction
+                + " longSqueezeDuration=" + longSqueezeDuration
+                + " squeezeHaptic=" + squeezeHapticFeedback + "/" + squeezeHapticIgnoreRinger
+                + " squeezeCalibration=" + squeezeCalibration
+                + " swipeUpAction=" + swipeUpAction
+                + " swipeDownAction=" + swipeDownAction
+                + " swipeLeftAction=" + swipeLeftAction
+                + " swipeRightAction=" + swipeRightAction
+                + " screenHaptic=" + screenHapticFeedback + "/" + screenHapticIgnoreRinger
+                + "}";
+    }
+
+    public static final class Builder {
+        private boolean mSqueezeEnabled = true;
+        private int mSqueezeForce = SQUEEZE_FORCE_DEFAULT;
+        private int mShortSqueezeAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mLongSqueezeAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mDoubleSqueezeAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mHoldSqueezeAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mLongSqueezeDuration = LONG_SQUEEZE_DURATION_DEFAULT;
+        private boolean mSqueezeHapticFeedback = true;
+        private boolean mSqueezeHapticIgnoreRinger = true;
+        private int mSqueezeCalibration = CALIBRATION_OFF;
+        private int mSwipeUpAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mSwipeDownAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mSwipeLeftAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private int mSwipeRightAction = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+        private boolean mScreenHapticFeedback = true;
+        private boolean mScreenHapticIgnoreRinger = true;
+
+        public Builder() {}
+
+        private Builder(GestureConfig c) {
+            mSqueezeEnabled = c.squeezeEnabled;
+            mSqueezeForce = c.squeezeForce;
+            mShortSqueezeAction = c.shortSqueezeAction;
+            mLongSqueezeAction = c.longSqueezeAction;
+            mDoubleSqueezeAction = c.doubleSqueezeAction;
+            mHoldSqueezeAction = c.holdSqueezeAction;
+            mLongSqueezeDuration = c.longSqueezeDuration;
+            mSqueezeHapticFeedback = c.squeezeHapticFeedback;
+            mSqueezeHapticIgnoreRinger = c.squeezeHapticIgnoreRinger;
+            mSqueezeCalibration = c.squeezeCalibration;
+            mSwipeUpAction = c.swipeUpAction;
+            mSwipeDownAction = c.swipeDownAction;
+            mSwipeLeftAction = c.swipeLeftAction;
+            mSwipeRightAction = c.swipeRightAction;
+            mScreenHapticFeedback = c.screenHapticFeedback;
+            mScreenHapticIgnoreRinger = c.screenHapticIgnoreRinger;
+        }
+
+        public Builder setSqueezeEnabled(boolean enabled) {
+            mSqueezeEnabled = enabled;
+            return this;
+        }
+
+        public Builder setSqueezeForce(int force) {
+            mSqueezeForce = force;
+            return this;
+        }
+
+        public Builder setShortSqueezeAction(int action) {
+            mShortSqueezeAction = action;
+            return this;
+        }
+
+        public Builder setLongSqueezeAction(int action) {
+            mLongSqueezeAction = action;
+            return this;
+        }
+
+        public Builder setDoubleSqueezeAction(int action) {
+            mDoubleSqueezeAction = action;
+            return this;
+        }
+
+        public Builder setHoldSqueezeAction(int action) {
+            mHoldSqueezeAction = action;
+            return this;
+        }
+
+        public Builder setLongSqueezeDuration(int durationMs) {
+            mLongSqueezeDuration = durationMs;
+            return this;
+        }
+
+        public Builder setSqueezeHapticFeedback(boolean enabled) {
+            mSqueezeHapticFeedback = enabled;
+            return this;
+        }
+
+        public Builder setSqueezeHapticIgnoreRinger(boolean ignoreRinger) {
+            mSqueezeHapticIgnoreRinger = ignoreRinger;
+            return this;
+        }
+
+        public Builder setSqueezeCalibration(int mode) {
+            mSqueezeCalibration = mode;
+            return this;
+        }
+
+        public Builder setSwipeUpAction(int action) {
+            mSwipeUpAction = action;
+            return this;
+        }
+
+        public Builder setSwipeDownAction(int action) {
+            mSwipeDownAction = action;
+            return this;
+        }
+
+        public Builder setSwipeLeftAction(int action) {
+            mSwipeLeftAction = action;
+            return this;
+        }
+
+        public Builder setSwipeRightAction(int action) {
+            mSwipeRightAction = action;
+            return this;
+        }
+
+        public Builder setScreenHapticFeedback(boolean enabled) {
+            mScreenHapticFeedback = enabled;
+            return this;
+        }
+
+        public Builder setScreenHapticIgnoreRinger(boolean ignoreRinger) {
+            mScreenHapticIgnoreRinger = ignoreRinger;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if any value is out of range
+         */
+        public GestureConfig build() {
+            checkRange("squeeze force", mSqueezeForce, 0, SQUEEZE_FORCE_MAX);
+            checkRange("long squeeze duration", mLongSqueezeDuration,
+                    LONG_SQUEEZE_DURATION_MIN, LONG_SQUEEZE_DURATION_MAX);
+            checkRange("squeeze calibration", mSqueezeCalibration, CALIBRATION_OFF,
+                    CALIBRATION_APPLY);
+            checkAction("short squeeze", mShortSqueezeAction);
+            checkAction("long squeeze", mLongSqueezeAction);
+            checkAction("double squeeze", mDoubleSqueezeAction);
+            checkAction("hold squeeze", mHoldSqueezeAction);
+            checkAction("swipe up", mSwipeUpAction);
+            checkAction("double swipe down", mSwipeDownAction);
+            checkAction("swipe left", mSwipeLeftAction);
+            checkAction("swipe right", mSwipeRightAction);
+            return new GestureConfig(this);
+        }
+
+        private static void checkAction(String name, int action) {
+            checkRange(name + " action", action, TouchscreenGestureConstants.ACTION_DO_NOTHING,
+                    TouchscreenGestureConstants.ACTION_TURN_SCREEN_ON_OFF);
+        }
+
+        private static void checkRange(String name, int value, int min, int max) {
+            if (value < min || value > max) {
+                throw new IllegalArgumentException(name + " out of range: " + value);
+            }
+        }
+    }
+}
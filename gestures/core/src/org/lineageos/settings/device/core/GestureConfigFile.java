@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary form of a GestureConfig, so a service can start from one small read
+ * instead of the preferences XML. The file is an 8 byte header, the magic followed by the
+ * version, and then a fixed size big endian body:
+ *
+ *  byte  flags, the FLAG_* bits
+ *  short squeeze force
+ *  short long squeeze duration in milliseconds
+ *  byte  squeeze calibration mode
+ *  byte  short, long, double and hold squeeze actions
+ *  byte  swipe up, double swipe down, swipe left and swipe right actions
+ *
+ * A file with another version or size is rejected, the caller then falls back to the
+ * preferences and rewrites it.
+ */
+public final class GestureConfigFile {
+
+    public static final int MAGIC = 0x48474346; // "HGCF"
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 8;
+    public static final int BODY_SIZE = 14;
+    public static final int SIZE = HEADER_SIZE + BODY_SIZE;
+
+    private static final int FLAG_SQUEEZE_ENABLED = 1 << 0;
+    private static final int FLAG_SQUEEZE_HAPTIC = 1 << 1;
+    private static final int FLAG_SQUEEZE_HAPTIC_IGNORE_RINGER = 1 << 2;
+    private static final int FLAG_SCREEN_HAPTIC = 1 << 3;
+    private static final int FLAG_SCREEN_HAPTIC_IGNORE_RINGER = 1 << 4;
+
+    private GestureConfigFile() {}
+
+    public static byte[] encode(GestureConfig config) {
+        final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        int flags = 0;
+        if (config.squeezeEnabled) flags |= FLAG_SQUEEZE_ENABLED;
+        if (config.squeezeHapticFeedback) flags |= FLAG_SQUEEZE_HAPTIC;
+        if (config.squeezeHapticIgnoreRinger) flags |= FLAG_SQUEEZE_HAPTIC_IGNORE_RINGER;
+        if (config.screenHapticFeedback) flags |= FLAG_SCREEN_HAPTIC;
+        if (config.screenHapticIgnoreRinger) flags |= FLAG_SCREEN_HAPTIC_IGNORE_RINGER;
+        buffer.put((byte) flags);
+        buffer.putShort((short) config.squeezeForce);
+        buffer.putShort((short) config.longSqueezeDuration);
+        buffer.put((byte) config.squeezeCalibration);
+        buffer.put((byte) config.shortSqueezeAction);
+        buffer.put((byte) config.longSqueezeAction);
+        buffer.put((byte) config.doubleSqueezeAction);
+        buffer.put((byte) config.holdSqueezeAction);
+        buffer.put((byte) config.swipeUpAction);
+        buffer.put((byte) config.swipeDownAction);
+        buffer.put((byte) config.swipeLeftAction);
+        buffer.put((byte) config.swipeRightAction);
+        return buffer.array();
+    }
+
+    /**
+     * @throws IOException if the data is not a config of this version, or holds values
+     * GestureConfig does not accept
+     */
+    public static GestureConfig decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() != SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a gesture config");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported gesture config version " + version);
+        }
+        final int flags = buffer.get();
+        try {
+            return new GestureConfig.Builder()
+                    .setSqueezeEnabled((flags & FLAG_SQUEEZE_ENABLED) != 0)
+                    .setSqueezeHapticFeedback((flags & FLAG_SQUEEZE_HAPTIC) != 0)
+                    .setSqueezeHapticIgnoreRinger(
+                            (flags & FLAG_SQUEEZE_HAPTIC_IGNORE_RINGER) != 0)
+                    .setScreenHapticFeedback((flags & FLAG_SCREEN_HAPTIC) != 0)
+                    .setScreenHapticIgnoreRinger((flags & FLAG_SCREEN_HAPTIC_IGNORE_RINGER) != 0)
+                    .setSqueezeForce(buffer.getShort())
+                    .setLongSqueezeDuration(buffer.getShort())
+                    .setSqueezeCalibration(buffer.get())
+                    .setShortSqueezeAction(buffer.get())
+                    .setLongSqueezeAction(buffer.get())
+                    .setDoubleSqueezeAction(buffer.get())
+                    .setHoldSqueezeAction(buffer.get())
+                    .setSwipeUpAction(buffer.get())
+                    .setSwipeDownAction(buffer.get())
+                    .setSwipeLeftAction(buffer.get())
+                    .setSwipeRightAction(buffer.get())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid gesture config: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the whole file with a single read.
+     */
+    public static GestureConfig read(File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            final ByteBuffer buffer = ByteBuffer.allocate(SIZE + 1);
+            // One extra byte, so an oversized file is caught by decode()
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read > 0 && buffer.hasRemaining());
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Replaces the file atomically, readers see either the old or the new config. Each call
+     * writes its own temporary file, so concurrent writers cannot mix their bytes; the last
+     * rename wins.
+     */
+    public static void write(File file, GestureConfig config) throws IOException {
+        final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(encode(config));
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+}
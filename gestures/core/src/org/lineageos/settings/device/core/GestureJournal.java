@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Fixed size in-memory history of the gesture path, oldest records overwritten first.
+ * Records are kept in parallel primitive arrays, so appending one is a few stores under an
+ * uncontended lock and never allocates. Three kinds are kept:
+ *
+ *  event    a raw sensor event, as in a GestureTrace
+ *  gesture  a classification, with its latency from the triggering event or deadline
+ *  action   the action run for it, with its latency from the classification
+ *
+ * The events can be written back out as a GestureTrace and replayed.
+ */
+public class GestureJournal implements GestureTrace.Recorder {
+
+    public static final int KIND_EVENT = 0;
+    public static final int KIND_GESTURE = 1;
+    public static final int KIND_ACTION = 2;
+
+    private static final String[] KIND_NAMES = { "event", "gesture", "action" };
+
+    private final int mMask;
+    private final long[] mTimestamps;
+    private final byte[] mSensors;
+    private final byte[] mKinds;
+    private final float[] mValues0;
+    private final float[] mValues1;
+    private final short[] mCodes;
+    private final int[] mLatencies;
+    private long mCount;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public GestureJournal(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mMask = size - 1;
+        mTimestamps = new long[size];
+        mSensors = new byte[size];
+        mKinds = new byte[size];
+        mValues0 = new float[size];
+        mValues1 = new float[size];
+        mCodes = new short[size];
+        mLatencies = new int[size];
+    }
+
+    @Override
+    public boolean record(int sensor, long timestamp, float value0, float value1) {
+        append(KIND_EVENT, sensor, timestamp, value0, value1, -1, -1);
+        return true;
+    }
+
+    /**
+     * @param timestamp sensor time of the event or deadline that triggered it
+     */
+    public void onGesture(int sensor, long timestamp, int gesture, long latencyNs) {
+        append(KIND_GESTURE, sensor, timestamp, 0, 0, gesture, latencyNs);
+    }
+
+    /**
+     * @param action the action id, -1 for anything run outside the action registry
+     */
+    public void onAction(int sensor, long timestamp, int action, long latencyNs) {
+        append(KIND_ACTION, sensor, timestamp, 0, 0, action, latencyNs);
+    }
+
+    private synchronized void append(int kind, int sensor, long timestamp, float value0,
+            float value1, int code, long latencyNs) {
+        final int i = (int) mCount & mMask;
+        mTimestamps[i] = timestamp;
+        mSensors[i] = (byte) sensor;
+        mKinds[i] = (byte) kind;
+        mValues0[i] = value0;
+        mValues1[i] = value1;
+        mCodes[i] = (short) code;
+        mLatencies[i] = latencyNs < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, latencyNs / 1000);
+        mCount++;
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return long records appended since creation, including overwritten ones
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Writes the events still held, oldest first, in the GestureTrace format.
+     *
+     * @return int the number of events written
+     */
+    public synchronized int writeTrace(GestureTraceWriter writer) {
+        int written = 0;
+        for (long n = first(); n < mCount; n++) {
+            final int i = (int) n & mMask;
+            if (mKinds[i] == KIND_EVENT
+                    && writer.record(mSensors[i], mTimestamps[i], mValues0[i], mValues1[i])) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("  " + (mCount - first()) + " of " + mCount + " records");
+        for (long n = first(); n < mCount; n++) {
+            final int i = (int) n & mMask;
+            final StringBuilder sb = new StringBuilder("  ")
+                    .append(mTimestamps[i] / 1000000).append(' ')
+                    .append(GestureTrace.sensorName(mSensors[i])).append(' ')
+                    .append(KIND_NAMES[mKinds[i]]);
+            if (mKinds[i] == KIND_EVENT) {
+                sb.append(' ').append(mValues0[i]).append(' ').append(mValues1[i]);
+            } else {
+                sb.append(' ').append(mCodes[i]).append(' ').append(mLatencies[i]).append("us");
+            }
+            pw.println(sb);
+        }
+    }
+
+    private long first() {
+        return Math.max(0, mCount - (mMask + 1));
+    }
+}
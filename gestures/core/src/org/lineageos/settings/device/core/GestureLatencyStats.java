@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Per gesture latency histograms for the stages of one engine:
+ *
+ *  delivery  sensor event timestamp to the listener callback
+ *  classify  callback (or timer deadline) to the gesture being recognized
+ *  dispatch  recognition to the action starting to run, on the worker for offloaded ones
+ *  action    action start to action completion
+ *
+ * Events and classifications come from the engine's thread. An action is queued there and
+ * may then start and end on another thread, its timestamps travel in one of a fixed set of
+ * slots. With a GestureJournal set, each classification and action is also appended to it.
+ */
+public class GestureLatencyStats {
+
+    public static final int STAGE_DELIVERY = 0;
+    public static final int STAGE_CLASSIFY = 1;
+    public static final int STAGE_DISPATCH = 2;
+    public static final int STAGE_ACTION = 3;
+
+    private static final String[] STAGE_NAMES = { "delivery", "classify", "dispatch",
+            "action" };
+
+    // Actions tracked between queueing and completion, as many as the dispatcher queues
+    private static final int MAX_PENDING = 16;
+
+    private final GestureScheduler mClock;
+    private final int mFirstGesture;
+    private final String[] mNames;
+    private final LatencyHistogram[][] mHistograms;
+
+    private boolean mFromEvent;
+    private long mEventTime;
+    private long mTriggerTime;
+    private int mGesture = -1;
+    private long mClassifiedTime;
+    private int mInlineSlot = -1;
+
+    // Pending actions, by slot
+    private final int[] mPendingGestures = new int[MAX_PENDING];
+    private final int[] mPendingActions = new int[MAX_PENDING];
+    private final long[] mPendingTriggers = new long[MAX_PENDING];
+    private final long[] mPendingClassified = new long[MAX_PENDING];
+    private final long[] mPendingStarts = new long[MAX_PENDING];
+    private int mNextSlot;
+
+    private GestureJournal mJournal;
+    private int mSensor;
+
+    /**
+     * @param names gesture names, names[i] being gesture firstGesture + i; null entries are
+     * not tracked
+     */
+    public GestureLatencyStats(GestureScheduler clock, int firstGesture, String... names) {
+        mClock = clock;
+        mFirstGesture = firstGesture;
+        mNames = names;
+        mHistograms = new LatencyHistogram[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                mHistograms[i] = new LatencyHistogram[STAGE_NAMES.length];
+                for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+                    mHistograms[i][stage] = new LatencyHistogram();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param sensor the GestureTrace sensor id the engine's records are tagged with
+     */
+    public void setJournal(GestureJournal journal, int sensor) {
+        mJournal = journal;
+        mSensor = sensor;
+    }
+
+    /**
+     * A sensor event reached the engine.
+     */
+    public synchronized void onEvent(long timestamp) {
+        mFromEvent = true;
+        mEventTime = timestamp;
+        mTriggerTime = mClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * A timer fired for a decision due at the given sensor time.
+     */
+    public synchronized void onDeadline(long deadline) {
+        mFromEvent = false;
+        mTriggerTime = deadline;
+    }
+
+    public synchronized void onClassified(int gesture) {
+        final long now = mClock.elapsedRealtimeNanos();
+        final GestureJournal journal = mJournal;
+        if (journal != null) {
+            final long trigger = mFromEvent ? mEventTime : mTriggerTime;
+            journal.onGesture(mSensor, trigger, gesture, now - trigger);
+        }
+        final int index = gesture - mFirstGesture;
+        if (index < 0 || index >= mNames.length || mNames[index] == null) {
+            mGesture = -1;
+            return;
+        }
+        final LatencyHistogram[] histograms = mHistograms[index];
+        if (mFromEvent) {
+            histograms[STAGE_DELIVERY].record(mTriggerTime - mEventTime);
+        }
+        histograms[STAGE_CLASSIFY].record(now - mTriggerTime);
+        mGesture = index;
+        mClassifiedTime = now;
+    }
+
+    public void onActionStart() {
+        onActionStart(-1);
+    }
+
+    /**
+     * An action runs inline, right now; onActionEnd() follows on the same thread.
+     *
+     * @param action the registry action id, only used for the journal
+     */
+    public synchronized void onActionStart(int action) {
+        mInlineSlot = onActionQueued(action);
+        onQueuedActionStart(mInlineSlot);
+    }
+
+    public synchronized void onActionEnd() {
+        onQueuedActionEnd(mInlineSlot);
+        mInlineSlot = -1;
+    }
+
+    /**
+     * An action was handed off for the most recent classification. Called on the engine's
+     * thread.
+     *
+     * @param action the registry action id, only used for the journal
+     * @return int the slot to pass to onQueuedActionStart/End, -1 if the gesture is not
+     * tracked
+     */
+    public synchronized int onActionQueued(int action) {
+        if (mGesture < 0) {
+            return -1;
+        }
+        final int slot = mNextSlot;
+        mNextSlot = (mNextSlot + 1) % MAX_PENDING;
+        mPendingGestures[slot] = mGesture;
+        mPendingActions[slot] = action;
+        mPendingTriggers[slot] = mFromEvent ? mEventTime : mTriggerTime;
+        mPendingClassified[slot] = mClassifiedTime;
+        mGesture = -1;
+        return slot;
+    }
+
+    /**
+     * The queued action starts running, on any thread.
+     */
+    public synchronized void onQueuedActionStart(int slot) {
+        if (slot < 0) {
+            return;
+        }
+        final long now = mClock.elapsedRealtimeNanos();
+        mPendingStarts[slot] = now;
+        mHistograms[mPendingGestures[slot]][STAGE_DISPATCH].record(
+                now - mPendingClassified[slot]);
+    }
+
+    public synchronized void onQueuedActionEnd(int slot) {
+        if (slot < 0) {
+            return;
+        }
+        final long now = mClock.elapsedRealtimeNanos();
+        mHistograms[mPendingGestures[slot]][STAGE_ACTION].record(now - mPendingStarts[slot]);
+        final GestureJournal journal = mJournal;
+        if (journal != null) {
+            journal.onAction(mSensor, mPendingTriggers[slot], mPendingActions[slot],
+                    now - mPendingClassified[slot]);
+        }
+    }
+
+    public synchronized LatencyHistogram getHistogram(int gesture, int stage) {
+        return mHistograms[gesture - mFirstGesture][stage];
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        for (int i = 0; i < mNames.length; i++) {
+            if (mNames[i] == null || mHistograms[i][STAGE_CLASSIFY].getCount() == 0) {
+                continue;
+            }
+            pw.println("  " + mNames[i] + ":");
+            for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+                final LatencyHistogram h = mHistograms[i][stage];
+                if (h.getCount() == 0) {
+                    continue;
+                }
+                pw.println(String.format("    %-8s n=%d p50=%s p90=%s p99=%s max=%s",
+                        STAGE_NAMES[stage], h.getCount(),
+                        formatMicros(h.getPercentile(50)), formatMicros(h.getPercentile(90)),
+                        formatMicros(h.getPercentile(99)), formatMicros(h.getMax())));
+            }
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 1000 ? micros + "us" : String.format("%.1fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Clock and delayed execution used by the gesture engines, a Handler on the device.
+ */
+public interface GestureScheduler {
+
+    long elapsedRealtime();
+
+    /**
+     * @return long the same clock in nanoseconds, the base of sensor event timestamps
+     */
+    long elapsedRealtimeNanos();
+
+    void postDelayed(Runnable r, long delayMs);
+
+    void removeCallbacks(Runnable r);
+}
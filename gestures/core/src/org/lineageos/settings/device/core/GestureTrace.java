@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Binary sensor trace format shared by the recorder and the replayer.
+ *
+ * The file starts with a 8 byte header, the magic followed by the version, and is then a
+ * sequence of fixed size big endian records:
+ *
+ *  long  event timestamp in nanoseconds, elapsed realtime base
+ *  byte  sensor, one of the SENSOR_* ids
+ *  float sensorEvent.values[0]
+ *  float sensorEvent.values[1]
+ */
+public final class GestureTrace {
+
+    public static final int MAGIC = 0x48475452; // "HGTR"
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 8;
+    public static final int RECORD_SIZE = 17;
+
+    public static final int SENSOR_EDGE_GESTURE = 1;
+    public static final int SENSOR_GESTURE_MOTION = 2;
+
+    /**
+     * Takes sensor events in trace order; a trace file, or an in-memory journal.
+     */
+    public interface Recorder {
+        /**
+         * @return boolean false if the event was not kept
+         */
+        boolean record(int sensor, long timestamp, float value0, float value1);
+    }
+
+    private GestureTrace() {}
+
+    public static String sensorName(int sensor) {
+        switch (sensor) {
+            case SENSOR_EDGE_GESTURE:
+                return "edge";
+            case SENSOR_GESTURE_MOTION:
+                return "motion";
+            default:
+                return "unknown";
+        }
+    }
+}
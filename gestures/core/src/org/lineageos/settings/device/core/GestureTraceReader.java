@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a GestureTrace one record at a time without allocating per record.
+ */
+public class GestureTraceReader implements Closeable {
+
+    private final DataInputStream mIn;
+
+    private long mTimestamp;
+    private int mSensor;
+    private float mValue0;
+    private float mValue1;
+
+    public GestureTraceReader(InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in));
+        if (mIn.readInt() != GestureTrace.MAGIC) {
+            throw new IOException("Not a gesture trace");
+        }
+        int version = mIn.readInt();
+        if (version != GestureTrace.VERSION) {
+            throw new IOException("Unsupported gesture trace version " + version);
+        }
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return boolean false at the end of the trace; a truncated last record is dropped
+     */
+    public boolean next() throws IOException {
+        try {
+            mTimestamp = mIn.readLong();
+            mSensor = mIn.readUnsignedByte();
+            mValue0 = mIn.readFloat();
+            mValue1 = mIn.readFloat();
+        } catch (EOFException e) {
+            return false;
+        }
+        return true;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getSensor() {
+        return mSensor;
+    }
+
+    public float getValue0() {
+        return mValue0;
+    }
+
+    public float getValue1() {
+        return mValue1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+}
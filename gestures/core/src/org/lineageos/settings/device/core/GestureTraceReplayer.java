@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.IOException;
+
+/**
+ * Feeds a GestureTrace back through the gesture engines. Time is taken from the trace, so
+ * the engines see the same clock on every run; MODE_REAL_TIME only adds wall clock pacing.
+ */
+public class GestureTraceReplayer {
+
+    public static final int MODE_AS_FAST_AS_POSSIBLE = 0;
+    public static final int MODE_REAL_TIME = 1;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final VirtualScheduler mScheduler;
+    private final ReplaySensorSource[] mSources = new ReplaySensorSource[256];
+
+    private long mTraceStart;
+    private long mWallStart;
+
+    /**
+     * @param scheduler the scheduler the engines under test were created with
+     */
+    public GestureTraceReplayer(VirtualScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * @return ReplaySensorSource the source to hand to the engine listening to this sensor
+     */
+    public ReplaySensorSource getSource(int sensor) {
+        if (mSources[sensor] == null) {
+            mSources[sensor] = new ReplaySensorSource();
+        }
+        return mSources[sensor];
+    }
+
+    /**
+     * Replays the whole trace, then lets pending timers run for tailMs after the last event.
+     *
+     * @return int the number of records read
+     */
+    public int replay(GestureTraceReader reader, int mode, long tailMs)
+            throws IOException, InterruptedException {
+        int count = 0;
+        long last = 0;
+        while (reader.next()) {
+            final long timestamp = reader.getTimestamp();
+            if (count == 0) {
+                mTraceStart = timestamp;
+                mWallStart = System.nanoTime();
+            }
+            advanceTo(timestamp, mode);
+            final ReplaySensorSource source = mSources[reader.getSensor()];
+            if (source != null) {
+                source.deliver(timestamp, reader.getValue0(), reader.getValue1());
+            }
+            last = timestamp;
+            count++;
+        }
+        if (count > 0) {
+            advanceTo(last + tailMs * NANOS_PER_MILLI, mode);
+        }
+        return count;
+    }
+
+    private void advanceTo(long timestamp, int mode) throws InterruptedException {
+        final long target = timestamp / NANOS_PER_MILLI;
+        if (mode == MODE_REAL_TIME) {
+            long deadline;
+            while ((deadline = mScheduler.nextDeadline()) <= target) {
+                sleepUntil(deadline * NANOS_PER_MILLI);
+                mScheduler.advanceTo(deadline);
+            }
+            sleepUntil(timestamp);
+        }
+        mScheduler.advanceTo(target);
+    }
+
+    private void sleepUntil(long timestamp) throws InterruptedException {
+        final long delay = (timestamp - mTraceStart) - (System.nanoTime() - mWallStart);
+        if (delay > 0) {
+            Thread.sleep(delay / NANOS_PER_MILLI, (int) (delay % NANOS_PER_MILLI));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Command line replayer for gesture traces pulled from a device.
+ *
+ *  java -jar GestureHandlerCore-host.jar [--realtime] [--screen-off] [--camera]
+ *          [key=value ...] trace
+ *
+ * key=value pairs override the gesture preferences, e.g. squeeze_short=3.
+ */
+public class GestureTraceTool {
+
+    private static final long TAIL_MS = 5000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int mode = GestureTraceReplayer.MODE_AS_FAST_AS_POSSIBLE;
+        boolean screenOn = true;
+        boolean camera = false;
+        String path = null;
+        MapConfigStore config = new MapConfigStore();
+        for (String arg : args) {
+            if (arg.equals("--realtime")) {
+                mode = GestureTraceReplayer.MODE_REAL_TIME;
+            } else if (arg.equals("--screen-off")) {
+                screenOn = false;
+            } else if (arg.equals("--camera")) {
+                camera = true;
+            } else if (arg.indexOf('=') > 0) {
+                int split = arg.indexOf('=');
+                config.put(arg.substring(0, split), arg.substring(split + 1));
+            } else {
+                path = arg;
+            }
+        }
+        if (path == null) {
+            System.err.println("usage: GestureTraceTool [--realtime] [--screen-off] [--camera]"
+                    + " [key=value ...] trace");
+            System.exit(1);
+        }
+
+        VirtualScheduler scheduler = new VirtualScheduler(0);
+        GestureTraceReplayer replayer = new GestureTraceReplayer(scheduler);
+        PrintingBackend backend = new PrintingBackend(System.out, scheduler, screenOn, camera);
+
+        ActionRegistry registry = new ActionRegistry();
+        for (int id = TouchscreenGestureConstants.ACTION_FLASHLIGHT;
+                id <= TouchscreenGestureConstants.ACTION_TURN_SCREEN_ON_OFF; id++) {
+            registry.register(id, "action " + id, ActionRegistry.FLAG_HAPTIC,
+                    backend.printAction(id));
+        }
+        ActionDispatcher dispatcher = new ActionDispatcher(registry, backend, backend);
+
+        SqueezeGestureEngine squeeze = new SqueezeGestureEngine(
+                replayer.getSource(GestureTrace.SENSOR_EDGE_GESTURE), backend, dispatcher,
+                backend, backend, backend, scheduler);
+        ScreenGestureEngine screen = new ScreenGestureEngine(
+                replayer.getSource(GestureTrace.SENSOR_GESTURE_MOTION), backend, dispatcher,
+                backend, backend);
+        GestureConfig gestureConfig = GestureConfig.parse(config);
+        squeeze.start(gestureConfig);
+        screen.start(gestureConfig);
+
+        int count;
+        try (GestureTraceReader reader = new GestureTraceReader(new FileInputStream(path))) {
+            count = replayer.replay(reader, mode, TAIL_MS);
+        }
+        for (int sensor : new int[] {
+                GestureTrace.SENSOR_EDGE_GESTURE, GestureTrace.SENSOR_GESTURE_MOTION }) {
+            ReplaySensorSource source = replayer.getSource(sensor);
+            System.out.println(GestureTrace.sensorName(sensor) + ": delivered="
+                    + source.getDeliveredCount() + " dropped=" + source.getDroppedCount());
+        }
+        System.out.println("records=" + count + " actions=" + backend.mActions);
+    }
+
+    private static class PrintingBackend
+            implements ActionSink, DeviceState, GestureWakeLock, SysfsNode {
+
+        private final PrintStream mOut;
+        private final GestureScheduler mScheduler;
+        private final boolean mScreenOn;
+        private final boolean mCamera;
+        private boolean mHeld;
+        private int mActions;
+
+        PrintingBackend(PrintStream out, GestureScheduler scheduler, boolean screenOn,
+                boolean camera) {
+            mOut = out;
+            mScheduler = scheduler;
+            mScreenOn = screenOn;
+            mCamera = camera;
+        }
+
+        private void print(String what) {
+            mOut.println(mScheduler.elapsedRealtime() + " " + what);
+        }
+
+        Runnable printAction(final int action) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    mActions++;
+                    print("action " + action);
+                }
+            };
+        }
+
+        @Override
+        public void triggerCameraShutter() {
+            mActions++;
+            print("camera shutter");
+        }
+
+        @Override
+        public void wakeUp() {
+            print("wake up");
+        }
+
+        @Override
+        public void hapticFeedback() {
+            print("haptic");
+        }
+
+        @Override
+        public boolean isScreenOn() {
+            return mScreenOn;
+        }
+
+        @Override
+        public boolean isRingerSilent() {
+            return false;
+        }
+
+        @Override
+        public boolean isCameraInForeground() {
+            return mCamera;
+        }
+
+        @Override
+        public boolean isDoubleTapEnabled() {
+            return true;
+        }
+
+        @Override
+        public void acquire(long timeoutMs) {
+            mHeld = true;
+        }
+
+        @Override
+        public void release() {
+            mHeld = false;
+        }
+
+        @Override
+        public boolean isHeld() {
+            return mHeld;
+        }
+
+        @Override
+        public boolean write(String value) {
+            return true;
+        }
+
+        @Override
+        public String read() {
+            return null;
+        }
+    }
+}
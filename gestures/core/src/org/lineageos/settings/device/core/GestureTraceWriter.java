@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes sensor events in the GestureTrace format. Safe to share between sensors.
+ */
+public class GestureTraceWriter implements GestureTrace.Recorder, Closeable, Flushable {
+
+    private final DataOutputStream mOut;
+    private final boolean mAutoFlush;
+    private boolean mFailed;
+
+    /**
+     * @param autoFlush flush after every record, so a trace survives a crash of the process
+     */
+    public GestureTraceWriter(OutputStream out, boolean autoFlush) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        mAutoFlush = autoFlush;
+        mOut.writeInt(GestureTrace.MAGIC);
+        mOut.writeInt(GestureTrace.VERSION);
+    }
+
+    /**
+     * @return boolean false once the underlying stream has failed, recording stops then
+     */
+    @Override
+    public synchronized boolean record(int sensor, long timestamp, float value0, float value1) {
+        if (mFailed) {
+            return false;
+        }
+        try {
+            mOut.writeLong(timestamp);
+            mOut.writeByte(sensor);
+            mOut.writeFloat(value0);
+            mOut.writeFloat(value1);
+            if (mAutoFlush) {
+                mOut.flush();
+            }
+        } catch (IOException e) {
+            mFailed = true;
+        }
+        return !mFailed;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mOut.close();
+    }
+}
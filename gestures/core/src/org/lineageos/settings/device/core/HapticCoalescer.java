@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides which haptic feedback requests become a pulse. A request is merged into the pulse
+ * still queued, or into the last one played if that started less than the merge window
+ * ago; anything else should be queued. Requests come from the gesture thread, playback is
+ * reported from wherever the vibrator is called.
+ */
+public class HapticCoalescer {
+
+    private final long mMergeWindowNs;
+
+    private final AtomicBoolean mPending = new AtomicBoolean();
+    // Far enough back that the first request is never within the window
+    private volatile long mLastPlayTime = Long.MIN_VALUE / 2;
+
+    // Requesting thread only
+    private long mRequested;
+    private long mMerged;
+    // Playing thread only
+    private long mPlayed;
+
+    public HapticCoalescer(long mergeWindowNs) {
+        mMergeWindowNs = mergeWindowNs;
+    }
+
+    /**
+     * @return boolean true if the caller has to queue a pulse and report it with onPlayed()
+     */
+    public boolean request(long now) {
+        mRequested++;
+        if (now - mLastPlayTime < mMergeWindowNs || !mPending.compareAndSet(false, true)) {
+            mMerged++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called as the queued pulse starts.
+     */
+    public void onPlayed(long now) {
+        mLastPlayTime = now;
+        mPending.set(false);
+        mPlayed++;
+    }
+
+    public long getRequested() {
+        return mRequested;
+    }
+
+    public long getMerged() {
+        return mMerged;
+    }
+
+    public long getPlayed() {
+        return mPlayed;
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("  requested=" + mRequested + " merged=" + mMerged + " played=" + mPlayed);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ConfigStore over an in-memory map, for driving the engines off device.
+ */
+public class MapConfigStore implements ConfigStore {
+
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    public MapConfigStore put(String key, Object value) {
+        mValues.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object value = mValues.get(key);
+        return value != null ? value.toString() : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = mValues.get(key);
+        return value != null ? Boolean.parseBoolean(value.toString()) : defValue;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = mValues.get(key);
+        return value != null ? Integer.parseInt(value.toString()) : defValue;
+    }
+}
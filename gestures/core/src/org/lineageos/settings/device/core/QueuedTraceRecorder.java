@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Hands sensor events to a GestureTraceWriter on another thread. Recording only copies the
+ * event into preallocated arrays and, for the first event of a batch, schedules a flush;
+ * the flush swaps in the second set of arrays and writes the batch out, so the recording
+ * thread never touches the file. Events arriving while a full batch waits are dropped and
+ * counted.
+ */
+public class QueuedTraceRecorder implements GestureTrace.Recorder {
+
+    private static final Logger LOG = Logger.getLogger("QueuedTraceRecorder");
+
+    // Long enough to batch a whole squeeze, short enough to lose little on a crash
+    private static final long FLUSH_DELAY_MS = 100;
+
+    private final GestureTraceWriter mWriter;
+    private final GestureScheduler mScheduler;
+
+    private Batch mPending;
+    private Batch mWriting;
+    private boolean mFlushScheduled;
+    private long mDropped;
+    private long mReportedDropped;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param scheduler where the writes happen, posted to at most once per batch
+     */
+    public QueuedTraceRecorder(GestureTraceWriter writer, GestureScheduler scheduler,
+            int capacity) {
+        mWriter = writer;
+        mScheduler = scheduler;
+        mPending = new Batch(capacity);
+        mWriting = new Batch(capacity);
+    }
+
+    @Override
+    public synchronized boolean record(int sensor, long timestamp, float value0,
+            float value1) {
+        if (!mPending.add(sensor, timestamp, value0, value1)) {
+            mDropped++;
+            return false;
+        }
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mScheduler.postDelayed(mFlushRunnable, FLUSH_DELAY_MS);
+        }
+        return true;
+    }
+
+    /**
+     * @return long events dropped because a batch was full
+     */
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    private void flush() {
+        final Batch batch;
+        final long dropped;
+        synchronized (this) {
+            batch = mPending;
+            mPending = mWriting;
+            mWriting = batch;
+            mFlushScheduled = false;
+            dropped = mDropped - mReportedDropped;
+            mReportedDropped = mDropped;
+        }
+        // Only this runnable touches mWriting, and it never runs twice at once
+        for (int i = 0; i < batch.mCount; i++) {
+            mWriter.record(batch.mSensors[i], batch.mTimestamps[i], batch.mValues0[i],
+                    batch.mValues1[i]);
+        }
+        batch.mCount = 0;
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            LOG.warning("Unable to flush gesture trace: " + e);
+        }
+        if (dropped > 0) {
+            LOG.warning("Dropped " + dropped + " gesture trace events");
+        }
+    }
+
+    private static final class Batch {
+        final long[] mTimestamps;
+        final byte[] mSensors;
+        final float[] mValues0;
+        final float[] mValues1;
+        int mCount;
+
+        Batch(int capacity) {
+            mTimestamps = new long[capacity];
+            mSensors = new byte[capacity];
+            mValues0 = new float[capacity];
+            mValues1 = new float[capacity];
+        }
+
+        boolean add(int sensor, long timestamp, float value0, float value1) {
+            if (mCount == mTimestamps.length) {
+                return false;
+            }
+            mTimestamps[mCount] = timestamp;
+            mSensors[mCount] = (byte) sensor;
+            mValues0[mCount] = value0;
+            mValues1[mCount] = value1;
+            mCount++;
+            return true;
+        }
+    }
+}
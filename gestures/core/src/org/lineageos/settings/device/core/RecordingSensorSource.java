@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * SensorSource decorator that copies every event into a trace recorder before delivering
+ * it.
+ */
+public class RecordingSensorSource implements SensorSource, SensorSource.Listener {
+
+    private final SensorSource mSource;
+    private final GestureTrace.Recorder mRecorder;
+    private final int mSensor;
+    private volatile Listener mListener;
+
+    public RecordingSensorSource(SensorSource source, GestureTrace.Recorder recorder,
+            int sensor) {
+        mSource = source;
+        mRecorder = recorder;
+        mSensor = sensor;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return mSource.isAvailable();
+    }
+
+    @Override
+    public void register(Listener listener) {
+        mListener = listener;
+        mSource.register(this);
+    }
+
+    @Override
+    public void unregister(Listener listener) {
+        mSource.unregister(this);
+    }
+
+    @Override
+    public void onSensorEvent(long timestamp, float value0, float value1) {
+        mRecorder.record(mSensor, timestamp, value0, value1);
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onSensorEvent(timestamp, value0, value1);
+        }
+    }
+}
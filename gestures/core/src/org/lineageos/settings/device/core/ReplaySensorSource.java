@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * SensorSource fed by a GestureTraceReplayer instead of the sensor hub. Events that arrive
+ * while nothing is registered are dropped and counted, as the hub would lose them.
+ */
+public class ReplaySensorSource implements SensorSource {
+
+    private Listener mListener;
+    private int mDelivered;
+    private int mDropped;
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void register(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void unregister(Listener listener) {
+        mListener = null;
+    }
+
+    public void deliver(long timestamp, float value0, float value1) {
+        if (mListener == null) {
+            mDropped++;
+            return;
+        }
+        mDelivered++;
+        mListener.onSensorEvent(timestamp, value0, value1);
+    }
+
+    public int getDeliveredCount() {
+        return mDelivered;
+    }
+
+    public int getDroppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Screen off gesture mapping for the hTC Gesture_Motion sensor.
+ *
+ *  value0 holds the gesture id reported by the sensor hub
+ *
+ * The engine is started once and then armed while the screen is off and disarmed while it
+ * is on; only arming and disarming touch the sensor registration. While armed, events are
+ * gated in process: a gesture is accepted while ARMED, the engine is BUSY until its action
+ * has run, on the dispatcher's worker for offloaded ones, and then stays in COOLDOWN until
+ * GESTURE_COOLDOWN_NS of sensor time after the event.
+ */
+public class ScreenGestureEngine implements SensorSource.Listener {
+
+    private static final Logger LOG = Logger.getLogger("GestureService");
+
+    // Gestures
+    public static final int DOUBLE_SWIPE_DOWN = 6;
+    public static final int DOUBLE_TAP = 15;
+    public static final int SWIPE_DOWN = 3;
+    public static final int SWIPE_LEFT = 4;
+    public static final int SWIPE_RIGHT = 5;
+    public static final int SWIPE_UP = 2;
+
+    /* Sensor gesture definition used to instantiate GestureMotionSensor, externally usable */
+    /* These values also correspond to kernel driver values, so don't change them */
+    public static final int SENSOR_GESTURE_ALL = 0x807C;
+    public static final int SENSOR_GESTURE_CAMERA = 0x40;
+    public static final int SENSOR_GESTURE_DOUBLE_TAP = 0x8000;
+    public static final int SENSOR_GESTURE_SWIPE_DOWN = 0x8;
+    public static final int SENSOR_GESTURE_SWIPE_LEFT = 0x10;
+    public static final int SENSOR_GESTURE_SWIPE_RIGHT = 0x20;
+    public static final int SENSOR_GESTURE_SWIPE_UP = 0x4;
+
+    private static final int STATE_DISARMED = 0;
+    private static final int STATE_ARMED = 1;
+    private static final int STATE_BUSY = 2;
+    private static final int STATE_COOLDOWN = 3;
+
+    // Debounces repeated reports of one gesture, the window the old re-registration gave us
+    public static final long GESTURE_COOLDOWN_NS = 50 * 1000000L;
+
+    private final SensorSource mSensor;
+    private final SysfsNode mControlNode;
+    private final ActionDispatcher mDispatcher;
+    private final ActionSink mActionSink;
+    private final DeviceState mDeviceState;
+
+    private volatile GestureConfig mConfig = GestureConfig.DEFAULT;
+    private GestureLatencyStats mLatencyStats;
+    private boolean mStarted;
+    // Leaves BUSY on the dispatcher's worker when the action was offloaded
+    private final AtomicInteger mState = new AtomicInteger(STATE_DISARMED);
+    private long mCooldownUntil;
+    private int mAccepted;
+    private int mFiltered;
+
+    private final ActionDispatcher.Listener mActionListener = new ActionDispatcher.Listener() {
+        @Override
+        public void onActionDone(ActionRegistry.Action action) {
+            // Unless disarmed meanwhile
+            mState.compareAndSet(STATE_BUSY, STATE_COOLDOWN);
+        }
+    };
+
+    public ScreenGestureEngine(SensorSource sensor, SysfsNode controlNode,
+            ActionDispatcher dispatcher, ActionSink actionSink, DeviceState deviceState) {
+        mSensor = sensor;
+        mControlNode = controlNode;
+        mDispatcher = dispatcher;
+        mActionSink = actionSink;
+        mDeviceState = deviceState;
+        mDispatcher.setListener(mActionListener);
+    }
+
+    public void start(GestureConfig config) {
+        mConfig = config;
+        if (!mSensor.isAvailable()) {
+            return;
+        }
+        if (!mControlNode.write(Integer.toHexString(SENSOR_GESTURE_ALL))) {
+            LOG.warning("Failed to write control path, unable to disable sensor");
+        }
+        mStarted = true;
+    }
+
+    /**
+     * Registers for gestures, typically as the screen turns off. Does nothing if the engine
+     * is not started or already armed.
+     */
+    public void arm() {
+        if (!mStarted || mState.get() != STATE_DISARMED) {
+            return;
+        }
+        mState.set(STATE_ARMED);
+        mSensor.register(this);
+    }
+
+    /**
+     * Unregisters from the sensor, typically as the screen turns on. Any gesture still in
+     * flight is dropped by the gate.
+     */
+    public void disarm() {
+        if (mState.get() == STATE_DISARMED) {
+            return;
+        }
+        mState.set(STATE_DISARMED);
+        mSensor.unregister(this);
+    }
+
+    public boolean isArmed() {
+        return mState.get() != STATE_DISARMED;
+    }
+
+    public void setConfig(GestureConfig config) {
+        mConfig = config;
+    }
+
+    public GestureConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * @return GestureLatencyStats stats covering every gesture this engine recognizes
+     */
+    public static GestureLatencyStats createLatencyStats(GestureScheduler clock) {
+        final String[] names = new String[DOUBLE_TAP - SWIPE_UP + 1];
+        names[SWIPE_UP - SWIPE_UP] = "swipe up";
+        names[SWIPE_DOWN - SWIPE_UP] = "swipe down";
+        names[SWIPE_LEFT - SWIPE_UP] = "swipe left";
+        names[SWIPE_RIGHT - SWIPE_UP] = "swipe right";
+        names[DOUBLE_SWIPE_DOWN - SWIPE_UP] = "double swipe down";
+        names[DOUBLE_TAP - SWIPE_UP] = "double tap";
+        return new GestureLatencyStats(clock, SWIPE_UP, names);
+    }
+
+    public void setLatencyStats(GestureLatencyStats stats) {
+        mLatencyStats = stats;
+        mDispatcher.setLatencyStats(stats);
+    }
+
+    public void stop() {
+        disarm();
+        mStarted = false;
+    }
+
+    @Override
+    public void onSensorEvent(long timestamp, float value0, float value1) {
+        if (timestamp - mCooldownUntil >= 0) {
+            mState.compareAndSet(STATE_COOLDOWN, STATE_ARMED);
+        }
+        if (!mState.compareAndSet(STATE_ARMED, STATE_BUSY)) {
+            mFiltered++;
+            return;
+        }
+        mAccepted++;
+        mCooldownUntil = timestamp + GESTURE_COOLDOWN_NS;
+        final GestureLatencyStats stats = mLatencyStats;
+        if (stats != null) {
+            stats.onEvent(timestamp);
+            stats.onClassified((int) value0);
+        }
+        boolean inFlight = false;
+        try {
+            int action = gestureToAction((int) value0);
+            if (action > -1) {
+                inFlight = handleGestureAction(action);
+            }
+        } finally {
+            if (!inFlight) {
+                mState.compareAndSet(STATE_BUSY, STATE_COOLDOWN);
+            }
+        }
+    }
+
+    /**
+     * @return gestures let through the gate since the engine was created
+     */
+    public int getAcceptedCount() {
+        return mAccepted;
+    }
+
+    /**
+     * @return gestures dropped because the engine was busy, cooling down or disarmed
+     */
+    public int getFilteredCount() {
+        return mFiltered;
+    }
+
+    public int gestureToAction(int gesture) {
+        switch (gesture) {
+            case DOUBLE_TAP:
+                if (!mDeviceState.isDoubleTapEnabled()) {
+                    return -1;
+                }
+                tryHapticFeedback();
+                final GestureLatencyStats stats = mLatencyStats;
+                if (stats != null) {
+                    stats.onActionStart();
+                    mActionSink.wakeUp();
+                    stats.onActionEnd();
+                } else {
+                    mActionSink.wakeUp();
+                }
+                return -1;
+            case SWIPE_UP:
+                return mConfig.swipeUpAction;
+            case DOUBLE_SWIPE_DOWN:
+                return mConfig.swipeDownAction;
+            case SWIPE_LEFT:
+                return mConfig.swipeLeftAction;
+            case SWIPE_RIGHT:
+                return mConfig.swipeRightAction;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return true if the action was handed to the dispatcher's worker and has yet to run
+     */
+    public boolean handleGestureAction(int action) {
+        final ActionRegistry.Action performed = mDispatcher.dispatch(action);
+        if (performed == null) {
+            return false;
+        }
+        if (performed.hasHaptic()) {
+            tryHapticFeedback();
+        }
+        return mDispatcher.isOffloaded(performed);
+    }
+
+    private void tryHapticFeedback() {
+        final GestureConfig config = mConfig;
+        if (config.screenHapticFeedback
+                && (config.screenHapticIgnoreRinger || !mDeviceState.isRingerSilent()))
+            mActionSink.hapticFeedback();
+    }
+}
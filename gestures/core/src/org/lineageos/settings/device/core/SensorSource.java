@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * A single hub sensor the gesture engines listen to.
+ */
+public interface SensorSource {
+
+    interface Listener {
+        /**
+         * @param timestamp event timestamp in nanoseconds, elapsed realtime base
+         * @param value0 sensorEvent.values[0]
+         * @param value1 sensorEvent.values[1]
+         */
+        void onSensorEvent(long timestamp, float value0, float value1);
+    }
+
+    boolean isAvailable();
+
+    void register(Listener listener);
+
+    void unregister(Listener listener);
+}
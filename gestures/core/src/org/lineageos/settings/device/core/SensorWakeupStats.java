@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Counts how often sensor deliveries wake the application processor while the screen is
+ * off. Deliveries closer together than BATCH_GAP_MS are one wakeup, which is how a flushed
+ * FIFO batch arrives.
+ */
+public class SensorWakeupStats {
+
+    public static final int MODE_SCREEN_ON = 0;
+    public static final int MODE_DIRECT = 1;
+    public static final int MODE_BATCHED = 2;
+
+    private static final String[] MODE_NAMES = { "screen on", "direct", "batched" };
+
+    public static final long BATCH_GAP_MS = 10;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+
+    private final long[] mEvents = new long[MODE_NAMES.length];
+    private final long[] mWakeups = new long[MODE_NAMES.length];
+    private final long[] mTime = new long[MODE_NAMES.length];
+
+    private int mMode = MODE_SCREEN_ON;
+    private long mModeSince;
+    private long mLastDelivery = Long.MIN_VALUE / 2;
+
+    public SensorWakeupStats(long now) {
+        mModeSince = now;
+    }
+
+    public synchronized void setMode(int mode, long now) {
+        mTime[mMode] += now - mModeSince;
+        mMode = mode;
+        mModeSince = now;
+    }
+
+    public synchronized void onDelivery(long now) {
+        mEvents[mMode]++;
+        if (now - mLastDelivery > BATCH_GAP_MS) {
+            mWakeups[mMode]++;
+        }
+        mLastDelivery = now;
+    }
+
+    public synchronized long getWakeups(int mode) {
+        return mWakeups[mode];
+    }
+
+    /**
+     * @return double wakeups per hour spent in the given mode, 0 if no time was spent in it
+     */
+    public synchronized double getWakeupsPerHour(int mode, long now) {
+        final long time = mTime[mode] + (mode == mMode ? now - mModeSince : 0);
+        return time > 0 ? mWakeups[mode] * (double) MILLIS_PER_HOUR / time : 0;
+    }
+
+    public synchronized void dump(PrintWriter pw, long now) {
+        for (int mode = MODE_DIRECT; mode < MODE_NAMES.length; mode++) {
+            final long time = mTime[mode] + (mode == mMode ? now - mModeSince : 0);
+            pw.println(String.format("%s: events=%d wakeups=%d time=%ds wakeups/h=%.1f",
+                    MODE_NAMES[mode], mEvents[mode], mWakeups[mode], time / 1000,
+                    getWakeupsPerHour(mode, now)));
+        }
+    }
+}
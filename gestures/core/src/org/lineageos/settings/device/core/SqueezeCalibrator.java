@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Opt-in tuning of the squeeze force threshold and long squeeze duration from how the
+ * user actually squeezes. Raw edge events are folded into per-window counters and a
+ * histogram of short press durations, so memory stays bounded. Every WINDOW_PRESSES
+ * presses the window is evaluated:
+ *
+ *  - many presses released under SHORT_SQUEEZE_MIN_DURATION_NS are grips and brushes
+ *    getting through, so the force threshold goes up one step
+ *  - many presses cancelled by the hub before reaching the long duration mean squeezes do
+ *    not hold above the threshold, so it goes down one step
+ *  - the long squeeze duration is put at twice the 90th percentile of short presses, so a
+ *    deliberate short squeeze does not run into it
+ *
+ * The force only moves one step in the direction decided, and never past FORCE_MIN or
+ * FORCE_MAX: a force the user set below FORCE_MIN can still be raised but is not lowered
+ * any further. Suggestions are only handed to the listener in CALIBRATION_APPLY mode; the
+ * reasoning of the last evaluation is always kept for dump().
+ */
+public class SqueezeCalibrator {
+
+    public interface Listener {
+        void onCalibrated(int squeezeForce, int longSqueezeDurationMs);
+    }
+
+    public static final int WINDOW_PRESSES = 40;
+
+    public static final int FORCE_STEP = 10;
+    // Narrower than the 0-200 the slider allows, the calibrator stays near the default
+    public static final int FORCE_MIN = GestureConfig.SQUEEZE_FORCE_DEFAULT - 50;
+    public static final int FORCE_MAX = GestureConfig.SQUEEZE_FORCE_MAX;
+
+    // The values the settings offer
+    public static final int LONG_DURATION_STEP_MS = 100;
+    public static final int LONG_DURATION_MIN_MS = 500;
+    public static final int LONG_DURATION_MAX_MS = 1200;
+
+    private static final int TOO_SHORT_PERCENT = 25;
+    private static final int CANCEL_PERCENT = 15;
+    // Below this the other signal is considered quiet
+    private static final int QUIET_PERCENT = 10;
+    private static final int MIN_SHORT_PRESSES = 10;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Listener mListener;
+    private final LatencyHistogram mShortPresses = new LatencyHistogram();
+
+    private boolean mPressed;
+    private long mDownTime;
+
+    // Current window
+    private int mPresses;
+    private int mTooShort;
+    private int mCancels;
+    private int mLongPresses;
+
+    private long mTotalPresses;
+    private int mEvaluations;
+    private int mApplied;
+    private String mLastEvaluation = "none yet";
+
+    public SqueezeCalibrator(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Folds one edge event in, evaluating the window once it is full.
+     */
+    public void onSensorEvent(long timestamp, float value0, GestureConfig config) {
+        if (value0 == 1.0f) {
+            mPressed = true;
+            mDownTime = timestamp;
+            return;
+        }
+        if (!mPressed) {
+            return;
+        }
+        final long duration = timestamp - mDownTime;
+        final boolean reachedLong = duration >= config.longSqueezeDuration * NANOS_PER_MILLI;
+        if (value0 == 2.0f) {
+            if (duration < SqueezeClassifier.SHORT_SQUEEZE_MIN_DURATION_NS) {
+                mTooShort++;
+            } else if (!reachedLong) {
+                mShortPresses.record(duration);
+            } else {
+                mLongPresses++;
+            }
+        } else if (value0 == 3.0f) {
+            // The hub also cancels presses held for too long, those were fine
+            if (reachedLong) {
+                mLongPresses++;
+            } else {
+                mCancels++;
+            }
+        } else {
+            return;
+        }
+        mPressed = false;
+        mTotalPresses++;
+        if (++mPresses >= WINDOW_PRESSES) {
+            evaluate(config);
+        }
+    }
+
+    private void evaluate(GestureConfig config) {
+        final int tooShortPercent = mTooShort * 100 / mPresses;
+        final int cancelPercent = mCancels * 100 / mPresses;
+        final StringBuilder reason = new StringBuilder()
+                .append(mPresses).append(" presses: ")
+                .append(tooShortPercent).append("% under ")
+                .append(SqueezeClassifier.SHORT_SQUEEZE_MIN_DURATION_NS / NANOS_PER_MILLI)
+                .append(" ms, ").append(cancelPercent).append("% cancelled, ")
+                .append(mShortPresses.getCount()).append(" short, ")
+                .append(mLongPresses).append(" long. ");
+
+        int force = config.squeezeForce;
+        if (tooShortPercent > TOO_SHORT_PERCENT && cancelPercent <= QUIET_PERCENT) {
+            force = Math.min(force + FORCE_STEP, Math.max(force, FORCE_MAX));
+            reason.append("Accidental presses, force ");
+        } else if (cancelPercent > CANCEL_PERCENT && tooShortPercent <= QUIET_PERCENT) {
+            force = Math.max(force - FORCE_STEP, Math.min(force, FORCE_MIN));
+            reason.append("Squeezes drop out, force ");
+        } else {
+            reason.append("Force ");
+        }
+        reason.append(config.squeezeForce).append(" -> ").append(force).append(". ");
+
+        int longDuration = config.longSqueezeDuration;
+        if (mShortPresses.getCount() >= MIN_SHORT_PRESSES) {
+            final long p90Ms = mShortPresses.getPercentile(90) / 1000;
+            longDuration = clamp((int) roundUp(2 * p90Ms, LONG_DURATION_STEP_MS),
+                    LONG_DURATION_MIN_MS, LONG_DURATION_MAX_MS);
+            reason.append("90% of short presses within ").append(p90Ms)
+                    .append(" ms, long duration ");
+        } else {
+            reason.append("Too few short presses, long duration ");
+        }
+        reason.append(config.longSqueezeDuration).append(" -> ").append(longDuration)
+                .append(" ms.");
+
+        final boolean changed = force != config.squeezeForce
+                || longDuration != config.longSqueezeDuration;
+        if (changed && config.squeezeCalibration == GestureConfig.CALIBRATION_APPLY) {
+            reason.append(" Applied.");
+            mApplied++;
+            mListener.onCalibrated(force, longDuration);
+        }
+        mLastEvaluation = reason.toString();
+        mEvaluations++;
+
+        mPresses = 0;
+        mTooShort = 0;
+        mCancels = 0;
+        mLongPresses = 0;
+        mShortPresses.reset();
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long roundUp(long value, long step) {
+        return (value + step - 1) / step * step;
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("  presses=" + mTotalPresses + " evaluations=" + mEvaluations
+                + " applied=" + mApplied + " window=" + mPresses + "/" + WINDOW_PRESSES);
+        pw.println("  last: " + mLastEvaluation);
+    }
+}
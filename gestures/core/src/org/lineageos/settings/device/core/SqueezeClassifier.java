@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Finite state classifier for the hTC Edge Gesture sensor, driven only by sensor
+ * timestamps. It recognizes short, long, double and squeeze-and-hold gestures and keeps a
+ * single deadline at a time; the owner arms one timer for getNextDeadline() and calls
+ * onTimeout() when it fires. Deadlines that are already due when an event arrives are
+ * processed first, so a trace always classifies the same way no matter how late the timer
+ * ran. Nothing is allocated per event.
+ */
+public class SqueezeClassifier {
+
+    public static final int SHORT_SQUEEZE = 100;
+    public static final int LONG_SQUEEZE = 101;
+    public static final int DOUBLE_SQUEEZE = 102;
+    public static final int HOLD_SQUEEZE = 103;
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    public static final long SHORT_SQUEEZE_MIN_DURATION_NS = 100 * NANOS_PER_MILLI;
+    public static final long DOUBLE_SQUEEZE_WINDOW_NS = 300 * NANOS_PER_MILLI;
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_PRESSED = 1;
+    private static final int STATE_LONG_REACHED = 2;
+    private static final int STATE_DONE = 3;
+    private static final int STATE_WAIT_DOUBLE = 4;
+    private static final int STATE_SECOND_PRESSED = 5;
+
+    public interface Listener {
+        /* The press has lasted long enough to count, time for haptic feedback */
+        void onSqueezeTick();
+        void onSqueezeGesture(int gesture);
+        /* The press was too short or cancelled by the sensor hub */
+        void onSqueezeRejected();
+    }
+
+    private final Listener mListener;
+
+    private long mLongDuration = GestureConfig.LONG_SQUEEZE_DURATION_DEFAULT * NANOS_PER_MILLI;
+    private boolean mTickEnabled;
+    private boolean mLongEnabled;
+    private boolean mDoubleEnabled;
+    private boolean mHoldEnabled;
+
+    private int mState = STATE_IDLE;
+    private long mDownTime;
+    private long mUpTime;
+    private boolean mTicked;
+
+    public SqueezeClassifier(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets what to look for. Only takes effect from the next press, so call it while idle.
+     * The double and hold gestures add latency to short and long ones, so only enable them
+     * when they are bound to something.
+     */
+    public void configure(long longDurationMs, boolean tick, boolean longEnabled,
+            boolean doubleEnabled, boolean holdEnabled) {
+        mLongDuration = longDurationMs * NANOS_PER_MILLI;
+        mTickEnabled = tick;
+        mLongEnabled = longEnabled;
+        mDoubleEnabled = doubleEnabled;
+        mHoldEnabled = holdEnabled;
+    }
+
+    public boolean isIdle() {
+        return mState == STATE_IDLE || mState == STATE_DONE;
+    }
+
+    public void reset() {
+        mState = STATE_IDLE;
+    }
+
+    /**
+     * @return long the sensor timestamp of the next decision, or NO_DEADLINE
+     */
+    public long getNextDeadline() {
+        switch (mState) {
+            case STATE_PRESSED:
+                if (mTickEnabled && !mTicked)
+                    return mDownTime + SHORT_SQUEEZE_MIN_DURATION_NS;
+                if (mLongEnabled || mHoldEnabled)
+                    return mDownTime + mLongDuration;
+                return NO_DEADLINE;
+            case STATE_LONG_REACHED:
+                return mDownTime + 2 * mLongDuration;
+            case STATE_WAIT_DOUBLE:
+                return mUpTime + DOUBLE_SQUEEZE_WINDOW_NS;
+            case STATE_SECOND_PRESSED:
+                if (mTickEnabled && !mTicked)
+                    return mDownTime + SHORT_SQUEEZE_MIN_DURATION_NS;
+                return mDownTime + mLongDuration;
+            default:
+                return NO_DEADLINE;
+        }
+    }
+
+    /**
+     * Takes the decision due at getNextDeadline().
+     */
+    public void onTimeout() {
+        switch (mState) {
+            case STATE_PRESSED:
+                if (mTickEnabled && !mTicked) {
+                    mTicked = true;
+                    mListener.onSqueezeTick();
+                } else if (mHoldEnabled) {
+                    mState = STATE_LONG_REACHED;
+                    if (mLongEnabled)
+                        mListener.onSqueezeTick();
+                } else if (mLongEnabled) {
+                    mState = STATE_DONE;
+                    mListener.onSqueezeTick();
+                    mListener.onSqueezeGesture(LONG_SQUEEZE);
+                }
+                break;
+            case STATE_LONG_REACHED:
+                mState = STATE_DONE;
+                mListener.onSqueezeTick();
+                mListener.onSqueezeGesture(HOLD_SQUEEZE);
+                break;
+            case STATE_WAIT_DOUBLE:
+                mState = STATE_IDLE;
+                mListener.onSqueezeGesture(SHORT_SQUEEZE);
+                break;
+            case STATE_SECOND_PRESSED:
+                if (mTickEnabled && !mTicked) {
+                    mTicked = true;
+                    mListener.onSqueezeTick();
+                } else {
+                    // Held on too long for a double squeeze: the first one stands on its own
+                    // and the second carries on as a fresh press
+                    mState = STATE_PRESSED;
+                    mListener.onSqueezeGesture(SHORT_SQUEEZE);
+                }
+                break;
+        }
+    }
+
+    /**
+     *  value0 = 1.0f the moment the edge sensors are squeezed down
+     *  value0 = 2.0f the moment the squeezed edge sensors are released
+     *  value0 = 3.0f squeezed down for too long or gesture cancelled
+     */
+    public void onSensorEvent(long timestamp, float value0) {
+        while (getNextDeadline() <= timestamp) {
+            onTimeout();
+        }
+
+        if (value0 == 1.0f) {
+            onPress(timestamp);
+        } else if (value0 == 2.0f) {
+            onRelease(timestamp);
+        } else if (value0 == 3.0f) {
+            onCancel();
+        }
+    }
+
+    private void onPress(long timestamp) {
+        switch (mState) {
+            case STATE_IDLE:
+            case STATE_DONE:
+                mState = STATE_PRESSED;
+                break;
+            case STATE_WAIT_DOUBLE:
+                mState = STATE_SECOND_PRESSED;
+                break;
+            default:
+                return;
+        }
+        mDownTime = timestamp;
+        mTicked = false;
+    }
+
+    private void onRelease(long timestamp) {
+        final long duration = timestamp - mDownTime;
+        switch (mState) {
+            case STATE_PRESSED:
+                if (duration < SHORT_SQUEEZE_MIN_DURATION_NS || duration >= mLongDuration) {
+                    mState = STATE_IDLE;
+                    mListener.onSqueezeRejected();
+                } else if (mDoubleEnabled) {
+                    mState = STATE_WAIT_DOUBLE;
+                    mUpTime = timestamp;
+                } else {
+                    mState = STATE_IDLE;
+                    mListener.onSqueezeGesture(SHORT_SQUEEZE);
+                }
+                break;
+            case STATE_LONG_REACHED:
+                mState = STATE_IDLE;
+                if (mLongEnabled) {
+                    mListener.onSqueezeGesture(LONG_SQUEEZE);
+                } else {
+                    mListener.onSqueezeRejected();
+                }
+                break;
+            case STATE_SECOND_PRESSED:
+                mState = STATE_IDLE;
+                mListener.onSqueezeGesture(duration < SHORT_SQUEEZE_MIN_DURATION_NS
+                        ? SHORT_SQUEEZE : DOUBLE_SQUEEZE);
+                break;
+            case STATE_DONE:
+                mState = STATE_IDLE;
+                break;
+        }
+    }
+
+    private void onCancel() {
+        switch (mState) {
+            case STATE_PRESSED:
+            case STATE_LONG_REACHED:
+            case STATE_SECOND_PRESSED:
+                mState = STATE_IDLE;
+                mListener.onSqueezeRejected();
+                break;
+            case STATE_DONE:
+                mState = STATE_IDLE;
+                break;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.logging.Logger;
+
+/**
+ * Squeeze gestures for the hTC Edge Gesture sensor. Classification is left to a
+ * SqueezeClassifier keyed on the sensor timestamps; this class feeds it, keeps its single
+ * timer armed and turns its decisions into actions.
+ *
+ *  value1 holds the value of the squeeze force
+ */
+public class SqueezeGestureEngine implements SensorSource.Listener {
+
+    private static final Logger LOG = Logger.getLogger("SqueezeService");
+
+    public static final int SHORTSQUEEZE = SqueezeClassifier.SHORT_SQUEEZE;
+    public static final int LONGSQUEEZE = SqueezeClassifier.LONG_SQUEEZE;
+    public static final int DOUBLESQUEEZE = SqueezeClassifier.DOUBLE_SQUEEZE;
+    public static final int HOLDSQUEEZE = SqueezeClassifier.HOLD_SQUEEZE;
+
+    private static final int ACTION_DO_NOTHING = TouchscreenGestureConstants.ACTION_DO_NOTHING;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+    // Slack on top of the longest classification before the wake lock gives up by itself
+    private static final long WAKE_LOCK_MARGIN = 1000;
+
+    private final SensorSource mSensor;
+    private final SysfsNode mThresholdNode;
+    private final ActionDispatcher mDispatcher;
+    private final ActionSink mActionSink;
+    private final DeviceState mDeviceState;
+    private final WakeLockBudget mWakeLock;
+    private final GestureScheduler mScheduler;
+    private final SqueezeClassifier mClassifier;
+
+    private volatile GestureConfig mConfig = GestureConfig.DEFAULT;
+    private boolean mStarted;
+    private long mDecisionDelayMs;
+    private GestureLatencyStats mLatencyStats;
+    private SqueezeCalibrator mCalibrator;
+    // Offloaded actions not run yet; the wake lock outlives the squeeze until they are
+    private int mActionsInFlight;
+    private int mDeferredOutcome = -1;
+
+    private final SqueezeClassifier.Listener mClassifierListener =
+            new SqueezeClassifier.Listener() {
+        @Override
+        public void onSqueezeTick() {
+            tryHapticFeedback();
+        }
+
+        @Override
+        public void onSqueezeGesture(int gesture) {
+            final GestureLatencyStats stats = mLatencyStats;
+            if (stats != null)
+                stats.onClassified(gesture);
+            if (gesture == SHORTSQUEEZE && mDeviceState.isCameraInForeground()) {
+                if (stats != null)
+                    stats.onActionStart();
+                mActionSink.triggerCameraShutter();
+                if (stats != null)
+                    stats.onActionEnd();
+            } else {
+                int action = gestureToAction(gesture);
+                if (action > -1)
+                    handleGestureAction(action);
+            }
+            if (mClassifier.isIdle())
+                releaseWakeLock(WakeLockBudget.outcomeFor(gesture));
+        }
+
+        @Override
+        public void onSqueezeRejected() {
+            releaseWakeLock(WakeLockBudget.OUTCOME_REJECTED);
+        }
+    };
+
+    private final ActionDispatcher.Listener mActionListener = new ActionDispatcher.Listener() {
+        @Override
+        public void onActionDone(ActionRegistry.Action action) {
+            mScheduler.postDelayed(mActionDoneRunnable, 0);
+        }
+    };
+
+    private final Runnable mActionDoneRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mActionsInFlight == 0) {
+                // Stopped meanwhile
+                return;
+            }
+            if (--mActionsInFlight == 0 && mDeferredOutcome >= 0) {
+                final int outcome = mDeferredOutcome;
+                mDeferredOutcome = -1;
+                mWakeLock.release(outcome);
+            }
+        }
+    };
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final long deadline = mClassifier.getNextDeadline();
+            if (deadline == SqueezeClassifier.NO_DEADLINE) {
+                return;
+            }
+            final GestureLatencyStats stats = mLatencyStats;
+            if (stats != null)
+                stats.onDeadline(deadline);
+            mClassifier.onTimeout();
+            armTimer(deadline);
+        }
+    };
+
+    public SqueezeGestureEngine(SensorSource sensor, SysfsNode thresholdNode,
+            ActionDispatcher dispatcher, ActionSink actionSink, DeviceState deviceState,
+            GestureWakeLock wakeLock, GestureScheduler scheduler) {
+        mSensor = sensor;
+        mThresholdNode = thresholdNode;
+        mDispatcher = dispatcher;
+        mActionSink = actionSink;
+        mDeviceState = deviceState;
+        mWakeLock = new WakeLockBudget(wakeLock, scheduler);
+        mScheduler = scheduler;
+        mClassifier = new SqueezeClassifier(mClassifierListener);
+        mDispatcher.setListener(mActionListener);
+    }
+
+    public void start(GestureConfig config) {
+        mConfig = config;
+        if (!mSensor.isAvailable()) {
+            return;
+        }
+        mStarted = true;
+        writeForceThreshold(config);
+        if (config.squeezeEnabled) {
+            mSensor.register(this);
+        }
+    }
+
+    /**
+     * Publishes a new configuration, registering the sensor or rewriting the force threshold
+     * only when the relevant values changed. A squeeze in progress finishes with the
+     * configuration it started with.
+     */
+    public void setConfig(GestureConfig config) {
+        final GestureConfig old = mConfig;
+        mConfig = config;
+        if (!mStarted) {
+            return;
+        }
+        if (config.squeezeEnabled != old.squeezeEnabled) {
+            if (config.squeezeEnabled) {
+                mSensor.register(this);
+            } else {
+                mSensor.unregister(this);
+            }
+        }
+        if (config.squeezeForce != old.squeezeForce) {
+            writeForceThreshold(config);
+        }
+    }
+
+    public GestureConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Holds timer decisions back by the sensor's max report latency. Events can sit in the
+     * hub FIFO that long, and one of them may still change the outcome.
+     */
+    public void setDecisionDelay(long delayMs) {
+        mDecisionDelayMs = delayMs;
+    }
+
+    /**
+     * @return GestureLatencyStats stats covering every gesture this engine recognizes
+     */
+    public static GestureLatencyStats createLatencyStats(GestureScheduler clock) {
+        return new GestureLatencyStats(clock, SHORTSQUEEZE, "short", "long", "double", "hold");
+    }
+
+    public void setLatencyStats(GestureLatencyStats stats) {
+        mLatencyStats = stats;
+        mDispatcher.setLatencyStats(stats);
+    }
+
+    /**
+     * @param calibrator fed with every edge event while squeeze calibration is enabled
+     */
+    public void setCalibrator(SqueezeCalibrator calibrator) {
+        mCalibrator = calibrator;
+    }
+
+    public void stop() {
+        mStarted = false;
+        mSensor.unregister(this);
+        mScheduler.removeCallbacks(mTimeoutRunnable);
+        mClassifier.reset();
+        mActionsInFlight = 0;
+        mDeferredOutcome = -1;
+        mScheduler.removeCallbacks(mActionDoneRunnable);
+        mWakeLock.release(WakeLockBudget.OUTCOME_REJECTED);
+    }
+
+    @Override
+    public void onSensorEvent(long timestamp, float value0, float value1) {
+        final GestureLatencyStats stats = mLatencyStats;
+        if (stats != null)
+            stats.onEvent(timestamp);
+        if (value0 == 1.0f) {
+            if (mClassifier.isIdle())
+                configureClassifier(mConfig);
+            if (!mDeviceState.isScreenOn())
+                mWakeLock.acquire(getWakeLockTimeout(mConfig));
+        }
+        mClassifier.onSensorEvent(timestamp, value0);
+        armTimer(timestamp);
+        final GestureConfig config = mConfig;
+        if (mCalibrator != null && config.squeezeCalibration != GestureConfig.CALIBRATION_OFF)
+            mCalibrator.onSensorEvent(timestamp, value0, config);
+    }
+
+    public int gestureToAction(int gesture) {
+        switch (gesture) {
+            case SHORTSQUEEZE:
+                return mConfig.shortSqueezeAction;
+            case LONGSQUEEZE:
+                return mConfig.longSqueezeAction;
+            case DOUBLESQUEEZE:
+                return mConfig.doubleSqueezeAction;
+            case HOLDSQUEEZE:
+                return mConfig.holdSqueezeAction;
+            default:
+                return -1;
+        }
+    }
+
+    public void handleGestureAction(int action) {
+        final ActionRegistry.Action dispatched = mDispatcher.dispatch(action);
+        if (dispatched != null && mDispatcher.isOffloaded(dispatched)) {
+            mActionsInFlight++;
+        }
+    }
+
+    public WakeLockBudget getWakeLockBudget() {
+        return mWakeLock;
+    }
+
+    /**
+     * @return long the longest a squeeze can take to classify: up to the hold deadline, or
+     * a short squeeze followed by the double squeeze window, plus any decision delay
+     */
+    private long getWakeLockTimeout(GestureConfig config) {
+        return 2L * config.longSqueezeDuration
+                + SqueezeClassifier.DOUBLE_SQUEEZE_WINDOW_NS / NANOS_PER_MILLI
+                + mDecisionDelayMs + WAKE_LOCK_MARGIN;
+    }
+
+    private void configureClassifier(GestureConfig config) {
+        final boolean shortSqueeze = config.shortSqueezeAction != ACTION_DO_NOTHING;
+        final boolean doubleSqueeze = config.doubleSqueezeAction != ACTION_DO_NOTHING;
+        // The shutter has to fire on the first squeeze, so no waiting for a second one
+        mClassifier.configure(config.longSqueezeDuration, shortSqueeze || doubleSqueeze,
+                config.longSqueezeAction != ACTION_DO_NOTHING,
+                doubleSqueeze && !mDeviceState.isCameraInForeground(),
+                config.holdSqueezeAction != ACTION_DO_NOTHING);
+    }
+
+    /**
+     * Re-arms the one timer for the classifier's next deadline, counting from the sensor
+     * time of the last decision.
+     */
+    private void armTimer(long now) {
+        mScheduler.removeCallbacks(mTimeoutRunnable);
+        final long deadline = mClassifier.getNextDeadline();
+        if (deadline != SqueezeClassifier.NO_DEADLINE) {
+            mScheduler.postDelayed(mTimeoutRunnable,
+                    (deadline - now + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI
+                            + mDecisionDelayMs);
+        }
+    }
+
+    /**
+     * Releases the wake lock for a finished squeeze, or leaves that to the last of its
+     * offloaded actions, so the device cannot suspend before they ran.
+     */
+    private void releaseWakeLock(int outcome) {
+        if (mActionsInFlight > 0) {
+            mDeferredOutcome = outcome;
+        } else {
+            mWakeLock.release(outcome);
+        }
+    }
+
+    private void tryHapticFeedback() {
+        final GestureConfig config = mConfig;
+        if (config.squeezeHapticFeedback
+                && (config.squeezeHapticIgnoreRinger || !mDeviceState.isRingerSilent()))
+            mActionSink.hapticFeedback();
+    }
+
+    private void writeForceThreshold(GestureConfig config) {
+        if (!mThresholdNode.write(Integer.toString(config.getForceThreshold()))) {
+            LOG.warning("Failed to write force threshold sysfs path");
+        }
+    }
+}
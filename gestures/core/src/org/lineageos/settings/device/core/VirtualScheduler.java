@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.util.ArrayList;
+
+/**
+ * GestureScheduler with a manually advanced clock, for driving the engines off device.
+ */
+public class VirtualScheduler implements GestureScheduler {
+
+    private final ArrayList<Runnable> mRunnables = new ArrayList<>();
+    private long[] mDeadlines = new long[8];
+    private long mNow;
+
+    public VirtualScheduler(long startTime) {
+        mNow = startTime;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return mNow;
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return mNow * 1000000L;
+    }
+
+    @Override
+    public void postDelayed(Runnable r, long delayMs) {
+        if (mRunnables.size() == mDeadlines.length) {
+            long[] deadlines = new long[mDeadlines.length * 2];
+            System.arraycopy(mDeadlines, 0, deadlines, 0, mDeadlines.length);
+            mDeadlines = deadlines;
+        }
+        mDeadlines[mRunnables.size()] = mNow + Math.max(0, delayMs);
+        mRunnables.add(r);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable r) {
+        for (int i = mRunnables.size() - 1; i >= 0; i--) {
+            if (mRunnables.get(i) == r) {
+                removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Moves the clock to the given time, running every callback that falls due on the way
+     * in deadline order.
+     */
+    public void advanceTo(long time) {
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < mRunnables.size(); i++) {
+                if (mDeadlines[i] <= time && (next < 0 || mDeadlines[i] < mDeadlines[next])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            mNow = Math.max(mNow, mDeadlines[next]);
+            removeAt(next).run();
+        }
+        mNow = Math.max(mNow, time);
+    }
+
+    public void advanceBy(long delta) {
+        advanceTo(mNow + delta);
+    }
+
+    /**
+     * @return long the earliest pending deadline, Long.MAX_VALUE if nothing is pending
+     */
+    public long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < mRunnables.size(); i++) {
+            next = Math.min(next, mDeadlines[i]);
+        }
+        return next;
+    }
+
+    public int pendingCount() {
+        return mRunnables.size();
+    }
+
+    private Runnable removeAt(int index) {
+        int last = mRunnables.size() - 1;
+        System.arraycopy(mDeadlines, index + 1, mDeadlines, index, last - index);
+        return mRunnables.remove(index);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Holds the gesture wake lock for one squeeze at a time and accounts for it. Held time,
+ * acquisitions and timeouts are charged to what the squeeze turned out to be.
+ */
+public class WakeLockBudget {
+
+    public static final int OUTCOME_SHORT = 0;
+    public static final int OUTCOME_LONG = 1;
+    public static final int OUTCOME_DOUBLE = 2;
+    public static final int OUTCOME_HOLD = 3;
+    public static final int OUTCOME_REJECTED = 4;
+
+    private static final String[] OUTCOME_NAMES = { "short", "long", "double", "hold",
+            "rejected" };
+
+    private final GestureWakeLock mWakeLock;
+    private final GestureScheduler mClock;
+
+    private final long[] mAcquisitions = new long[OUTCOME_NAMES.length];
+    private final long[] mTimeouts = new long[OUTCOME_NAMES.length];
+    private final long[] mHeldTime = new long[OUTCOME_NAMES.length];
+
+    private boolean mHeld;
+    private long mAcquiredAt;
+    private long mTimeout;
+
+    public WakeLockBudget(GestureWakeLock wakeLock, GestureScheduler clock) {
+        mWakeLock = wakeLock;
+        mClock = clock;
+    }
+
+    /**
+     * @return int the outcome a SqueezeClassifier gesture is charged to
+     */
+    public static int outcomeFor(int gesture) {
+        return gesture - SqueezeClassifier.SHORT_SQUEEZE;
+    }
+
+    public synchronized boolean isHeld() {
+        return mHeld;
+    }
+
+    /**
+     * Takes the lock unless this squeeze already holds it.
+     */
+    public synchronized void acquire(long timeoutMs) {
+        if (mHeld) {
+            return;
+        }
+        mHeld = true;
+        mAcquiredAt = mClock.elapsedRealtime();
+        mTimeout = timeoutMs;
+        mWakeLock.acquire(timeoutMs);
+    }
+
+    public synchronized void release(int outcome) {
+        if (!mHeld) {
+            return;
+        }
+        mHeld = false;
+        long held = mClock.elapsedRealtime() - mAcquiredAt;
+        if (held >= mTimeout) {
+            // The lock timed out by itself before the squeeze was done with it
+            held = mTimeout;
+            mTimeouts[outcome]++;
+        } else if (mWakeLock.isHeld()) {
+            mWakeLock.release();
+        }
+        mAcquisitions[outcome]++;
+        mHeldTime[outcome] += held;
+    }
+
+    public synchronized long getHeldTime(int outcome) {
+        return mHeldTime[outcome];
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        long acquisitions = 0;
+        long timeouts = 0;
+        long heldTime = 0;
+        for (int i = 0; i < OUTCOME_NAMES.length; i++) {
+            pw.println("  " + OUTCOME_NAMES[i] + ": acquisitions=" + mAcquisitions[i]
+                    + " timeouts=" + mTimeouts[i] + " held=" + mHeldTime[i] + "ms");
+            acquisitions += mAcquisitions[i];
+            timeouts += mTimeouts[i];
+            heldTime += mHeldTime[i];
+        }
+        pw.println("  total: acquisitions=" + acquisitions + " timeouts=" + timeouts
+                + " held=" + heldTime + "ms");
+    }
+}
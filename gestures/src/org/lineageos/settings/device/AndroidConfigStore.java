@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.SharedPreferences;
+
+import org.lineageos.settings.device.core.ConfigStore;
+
+public class AndroidConfigStore implements ConfigStore {
+
+    private final SharedPreferences mPrefs;
+
+    public AndroidConfigStore(SharedPreferences prefs) {
+        mPrefs = prefs;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        return mPrefs.getString(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return mPrefs.getBoolean(key, defValue);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return mPrefs.getInt(key, defValue);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.lineageos.settings.device.core.GestureScheduler;
+
+public class AndroidGestureScheduler implements GestureScheduler {
+
+    private final Handler mHandler;
+
+    public AndroidGestureScheduler(Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public void postDelayed(Runnable r, long delayMs) {
+        mHandler.postDelayed(r, delayMs);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable r) {
+        mHandler.removeCallbacks(r);
+    }
+}
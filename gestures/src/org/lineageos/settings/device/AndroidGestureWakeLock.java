@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.os.PowerManager;
+import android.os.PowerManager.WakeLock;
+
+import org.lineageos.settings.device.core.GestureWakeLock;
+
+public class AndroidGestureWakeLock implements GestureWakeLock {
+
+    private final WakeLock mWakeLock;
+
+    public AndroidGestureWakeLock(PowerManager powerManager, String tag) {
+        mWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+    }
+
+    @Override
+    public void acquire(long timeoutMs) {
+        mWakeLock.acquire(timeoutMs);
+    }
+
+    @Override
+    public void release() {
+        mWakeLock.release();
+    }
+
+    @Override
+    public boolean isHeld() {
+        return mWakeLock.isHeld();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.lineageos.settings.device.core.SensorSource;
+import org.lineageos.settings.device.core.SensorWakeupStats;
+
+/**
+ * SensorSource for a hub sensor looked up by name. Events are delivered on the given
+ * handler. With a max report latency set the hub queues events in its FIFO and hands them
+ * over in batches.
+ */
+public class AndroidSensorSource implements SensorSource, SensorEventListener2 {
+
+    private final SensorManager mSensorManager;
+    private final Handler mHandler;
+    private Sensor mSensor;
+    private volatile Listener mListener;
+    private SensorWakeupStats mWakeupStats;
+    private int mMaxReportLatencyUs;
+    private int mPendingLatencyUs = -1;
+
+    public AndroidSensorSource(SensorManager sensorManager, String name, Handler handler) {
+        mSensorManager = sensorManager;
+        mHandler = handler;
+        for (Sensor sensor : sensorManager.getSensorList(Sensor.TYPE_ALL)) {
+            if (sensor.getName().equals(name)) {
+                mSensor = sensor;
+            }
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return mSensor != null;
+    }
+
+    @Override
+    public void register(Listener listener) {
+        if (mSensor == null) {
+            return;
+        }
+        mListener = listener;
+        mSensorManager.registerListener(this, mSensor, SensorManager.SENSOR_DELAY_GAME,
+                mMaxReportLatencyUs, mHandler);
+    }
+
+    @Override
+    public void unregister(Listener listener) {
+        mListener = null;
+        mPendingLatencyUs = -1;
+        mSensorManager.unregisterListener(this);
+    }
+
+    public void setWakeupStats(SensorWakeupStats stats) {
+        mWakeupStats = stats;
+    }
+
+    /**
+     * Re-registers with a new max report latency, 0 for immediate delivery. Whatever the
+     * hub has queued is flushed first, so no event is lost on the way.
+     */
+    public void setMaxReportLatency(int latencyUs) {
+        if (mListener == null) {
+            mMaxReportLatencyUs = latencyUs;
+            return;
+        }
+        if (latencyUs == mMaxReportLatencyUs && mPendingLatencyUs < 0) {
+            return;
+        }
+        final boolean flushing = mPendingLatencyUs >= 0;
+        mPendingLatencyUs = latencyUs;
+        if (!flushing && !mSensorManager.flush(this)) {
+            onFlushCompleted(mSensor);
+        }
+    }
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        final Listener listener = mListener;
+        if (mPendingLatencyUs < 0 || listener == null) {
+            return;
+        }
+        mMaxReportLatencyUs = mPendingLatencyUs;
+        mPendingLatencyUs = -1;
+        mSensorManager.unregisterListener(this);
+        register(listener);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent sensorEvent) {
+        final SensorWakeupStats stats = mWakeupStats;
+        if (stats != null) {
+            stats.onDelivery(SystemClock.elapsedRealtime());
+        }
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onSensorEvent(sensorEvent.timestamp,
+                    sensorEvent.values[0], sensorEvent.values[1]);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+}
@@ -34,8 +34,8 @@ public class BootReceiver extends BroadcastReceiver {
     public void onReceive(final Context context, final Intent intent) {
         Log.d("DeviceHandler-BootReceiver", intent.getAction() + ":boot completed");
         if (intent.getAction().equals(Intent.ACTION_BOOT_COMPLETED)) {
-            Intent serviceIntent = new Intent(context, ScreenStateService.class);
-            context.startService(serviceIntent);
+            Intent gestureIntent = new Intent(context, ScreenGestureService.class);
+            context.startService(gestureIntent);
             Intent squeezeIntent = new Intent(context, SqueezeGestureService.class);
             context.startService(squeezeIntent);
         }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.app.ActivityManager;
+import android.app.TaskStackListener;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import org.lineageos.settings.device.core.ForegroundAppTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds a ForegroundAppTracker from task stack changes and keeps its camera app list in
+ * sync with the installed packages.
+ */
+public class ForegroundAppObserver {
+
+    private static final String TAG = "ForegroundAppObserver";
+
+    private static final String[] CAMERA_APP_ACTIONS = {
+        MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA,
+        MediaStore.INTENT_ACTION_STILL_IMAGE_CAMERA_SECURE,
+        MediaStore.INTENT_ACTION_VIDEO_CAMERA,
+    };
+
+    private static final String[] CAMERA_ACTIVITY_ACTIONS = {
+        MediaStore.ACTION_IMAGE_CAPTURE,
+        MediaStore.ACTION_VIDEO_CAPTURE,
+    };
+
+    private final Context mContext;
+    private final ActivityManager mActivityManager;
+    private final ForegroundAppTracker mTracker;
+
+    private final TaskStackListener mTaskStackListener = new TaskStackListener() {
+        @Override
+        public void onTaskStackChanged() {
+            updateTopActivity();
+        }
+    };
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updateCameraApps();
+        }
+    };
+
+    public ForegroundAppObserver(Context context, ForegroundAppTracker tracker) {
+        mContext = context;
+        mActivityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mTracker = tracker;
+    }
+
+    public void start() {
+        updateCameraApps();
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        mContext.registerReceiver(mPackageReceiver, filter);
+
+        try {
+            ActivityManager.getService().registerTaskStackListener(mTaskStackListener);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Unable to register task stack listener", e);
+        }
+        updateTopActivity();
+    }
+
+    public void stop() {
+        try {
+            ActivityManager.getService().unregisterTaskStackListener(mTaskStackListener);
+        } catch (RemoteException e) {
+            // Ignore
+        }
+        mContext.unregisterReceiver(mPackageReceiver);
+    }
+
+    private void updateTopActivity() {
+        List<ActivityManager.RunningTaskInfo> tasks = mActivityManager.getRunningTasks(1);
+        ComponentName top = tasks.isEmpty() ? null : tasks.get(0).topActivity;
+        if (top != null) {
+            mTracker.onForegroundChanged(top.getPackageName(), top.getClassName());
+        } else {
+            mTracker.onForegroundChanged(null, null);
+        }
+    }
+
+    private void updateCameraApps() {
+        final PackageManager pm = mContext.getPackageManager();
+        List<String> packages = new ArrayList<>();
+        List<String> components = new ArrayList<>();
+        for (String action : CAMERA_APP_ACTIONS) {
+            for (ResolveInfo info : pm.queryIntentActivities(new Intent(action), 0)) {
+                packages.add(info.activityInfo.packageName);
+            }
+        }
+        for (String action : CAMERA_ACTIVITY_ACTIONS) {
+            for (ResolveInfo info : pm.queryIntentActivities(new Intent(action), 0)) {
+                components.add(info.activityInfo.name);
+            }
+        }
+        mTracker.setCameraApps(packages, components);
+    }
+}
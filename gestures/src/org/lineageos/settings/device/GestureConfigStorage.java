@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.GestureConfigFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a GestureConfigFile next to the preferences. The preferences stay the source of
+ * truth for the settings screens; the services saveAsync() from their preference
+ * listener, and start from load(), which falls back to the preferences XML, and migrates
+ * it, when the file is missing, unreadable or older than the XML. The last case covers
+ * preferences written while no listener was around, a backup restore for one. Every write
+ * happens on the gesture worker.
+ */
+public final class GestureConfigStorage {
+
+    private static final String TAG = "GestureConfigStorage";
+
+    private static final String CONFIG_FILE = "gesture_config.bin";
+
+    /*
+     * apply() writes the preferences XML a little later, saving after it keeps the XML from
+     * looking newer than the file. Also folds the writes of a dragged slider together.
+     */
+    private static final long SAVE_DELAY_MS = 1000;
+
+    /* Both services listen to the same preferences, one save is enough */
+    private static final AtomicBoolean sSavePending = new AtomicBoolean();
+
+    private GestureConfigStorage() {}
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), CONFIG_FILE);
+    }
+
+    private static File getPreferencesFile(Context context) {
+        return new File(context.getDataDir(), "shared_prefs/"
+                + PreferenceManager.getDefaultSharedPreferencesName(context) + ".xml");
+    }
+
+    /**
+     * @return GestureConfig read from the binary file, else parsed from the preferences,
+     * else fallback
+     */
+    public static GestureConfig load(Context context, GestureConfig fallback) {
+        final File file = getFile(context);
+        final long written = file.lastModified();
+        if (written == 0) {
+            Log.i(TAG, "Migrating gesture preferences to " + file);
+        } else if (getPreferencesFile(context).lastModified() > written) {
+            Log.i(TAG, "Gesture preferences changed since " + file + " was written");
+        } else {
+            try {
+                return GestureConfigFile.read(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Rewriting gesture config: " + e.getMessage());
+            }
+        }
+        final GestureConfig config = parsePreferences(context);
+        if (config == null) {
+            return fallback;
+        }
+        GestureThread.get().getWorker().post(() -> write(file, config));
+        return config;
+    }
+
+    /**
+     * Writes the current preferences out, on the gesture worker.
+     */
+    private static void save(Context context) {
+        final GestureConfig config = parsePreferences(context);
+        if (config != null) {
+            write(getFile(context), config);
+        }
+    }
+
+    /**
+     * save() on the gesture worker after SAVE_DELAY_MS, folding together calls made before
+     * it runs.
+     */
+    public static void saveAsync(Context context) {
+        if (!sSavePending.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        GestureThread.get().getWorker().postDelayed(() -> {
+            sSavePending.set(false);
+            save(appContext);
+        }, SAVE_DELAY_MS);
+    }
+
+    private static GestureConfig parsePreferences(Context context) {
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        try {
+            return GestureConfig.parse(new AndroidConfigStore(prefs));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Rejecting gesture preferences: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(File file, GestureConfig config) {
+        try {
+            GestureConfigFile.write(file, config);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.StrictMode;
+
+/**
+ * The threads the gesture services share. Sensor events, classification timers and screen
+ * state changes all run on the gesture thread, which runs at display priority and must never
+ * block; actions that make slow binder calls are handed to the worker thread. Debuggable
+ * builds enable StrictMode on the gesture thread to catch anything that does block.
+ */
+public final class GestureThread {
+
+    private static final String TAG = "GestureThread";
+
+    private static GestureThread sInstance;
+
+    private final HandlerThread mThread =
+            new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+    private final HandlerThread mWorkerThread =
+            new HandlerThread(TAG + "Worker", Process.THREAD_PRIORITY_FOREGROUND);
+    private final Handler mHandler;
+    private final Handler mWorker;
+
+    public static synchronized GestureThread get() {
+        if (sInstance == null) {
+            sInstance = new GestureThread();
+        }
+        return sInstance;
+    }
+
+    private GestureThread() {
+        mThread.start();
+        mWorkerThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mWorker = new Handler(mWorkerThread.getLooper());
+        if (Build.IS_DEBUGGABLE) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                            .detectAll()
+                            .penaltyLog()
+                            .build());
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Handler for sensor listeners, schedulers and anything else on the gesture path
+     */
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * @return Handler for work that may block, such as binder calls into system services
+     */
+    public Handler getWorker() {
+        return mWorker;
+    }
+}
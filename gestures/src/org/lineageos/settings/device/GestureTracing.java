@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.Context;
+import android.os.SystemProperties;
+import android.util.Log;
+
+import org.lineageos.settings.device.core.GestureJournal;
+import org.lineageos.settings.device.core.GestureTraceWriter;
+import org.lineageos.settings.device.core.QueuedTraceRecorder;
+import org.lineageos.settings.device.core.RecordingSensorSource;
+import org.lineageos.settings.device.core.SensorSource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Records the raw gesture sensor events of this process into one trace file when
+ * persist.gestures.trace is set. The file is written from the gesture worker, the gesture
+ * thread only queues the events. Pull it with adb and replay it with GestureTraceTool.
+ *
+ * Events, classifications and actions always go to an in-memory GestureJournal, shown by
+ * dumpsys; its events can be exported to a trace file on demand.
+ */
+public class GestureTracing {
+
+    private static final String TAG = "GestureTracing";
+
+    private static final String TRACE_PROPERTY = "persist.gestures.trace";
+    private static final String TRACE_FILE = "gestures.trace";
+    private static final String JOURNAL_FILE = "journal.trace";
+
+    private static final int JOURNAL_CAPACITY = 1024;
+    // Events queued for the trace file between two writes
+    private static final int TRACE_BATCH_CAPACITY = 256;
+
+    private static final GestureJournal sJournal = new GestureJournal(JOURNAL_CAPACITY);
+
+    private static QueuedTraceRecorder sRecorder;
+    private static boolean sOpened;
+
+    private GestureTracing() {}
+
+    /**
+     * @return SensorSource the source wrapped to feed the journal, and the trace file too if
+     * tracing is enabled
+     */
+    public static SensorSource wrap(Context context, SensorSource source, int sensor) {
+        final SensorSource journaled = new RecordingSensorSource(source, sJournal, sensor);
+        final QueuedTraceRecorder recorder = getRecorder(context);
+        return recorder != null
+                ? new RecordingSensorSource(journaled, recorder, sensor) : journaled;
+    }
+
+    public static GestureJournal getJournal() {
+        return sJournal;
+    }
+
+    /**
+     * Writes the journal's events to a trace file next to the recorded trace.
+     */
+    public static void exportJournal(Context context, PrintWriter pw) {
+        final File file = new File(context.getFilesDir(), JOURNAL_FILE);
+        try (GestureTraceWriter writer = new GestureTraceWriter(new FileOutputStream(file),
+                false)) {
+            pw.println("Exported " + sJournal.writeTrace(writer) + " events to " + file);
+        } catch (IOException e) {
+            pw.println("Unable to export journal: " + e);
+        }
+    }
+
+    private static synchronized QueuedTraceRecorder getRecorder(Context context) {
+        if (!sOpened) {
+            sOpened = true;
+            if (SystemProperties.getBoolean(TRACE_PROPERTY, false)) {
+                final File file = new File(context.getFilesDir(), TRACE_FILE);
+                try {
+                    sRecorder = new QueuedTraceRecorder(
+                            new GestureTraceWriter(new FileOutputStream(file), false),
+                            new AndroidGestureScheduler(GestureThread.get().getWorker()),
+                            TRACE_BATCH_CAPACITY);
+                    Log.i(TAG, "Recording gesture trace to " + file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to open gesture trace", e);
+                }
+            }
+        }
+        return sRecorder;
+    }
+}
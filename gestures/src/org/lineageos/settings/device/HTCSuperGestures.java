@@ -18,91 +18,217 @@ package org.lineageos.settings.device;
 
 import android.app.Service;
 import android.content.ActivityNotFoundException;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.content.SharedPreferences;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraAccessException;
 import android.Manifest;
 import android.media.AudioManager;
 import android.media.session.MediaSessionLegacyHelper;
 import android.net.Uri;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.Message;
+import android.os.Looper;
 import android.os.PowerManager;
-import android.os.PowerManager.WakeLock;
 import android.os.SystemClock;
 import android.os.UserHandle;
-import android.os.Vibrator;
-import android.os.VibrationEffect;
 import android.preference.PreferenceManager;
-import android.provider.MediaStore;
 import android.provider.Settings;
-import android.view.KeyEvent;
-import android.app.ActivityManager;
-import android.content.ComponentName;
-import android.app.Instrumentation;
-import android.content.pm.PackageManager;
-import android.content.pm.PackageManager.NameNotFoundException;
-import android.content.pm.ApplicationInfo;
-import android.view.MotionEvent;
 import android.util.Log;
-import android.view.WindowManager;
-import android.widget.ImageView;
-import android.graphics.PixelFormat;
-import android.view.Display;
-import android.view.Gravity;
-import android.os.Handler;
-
-import java.util.Iterator;
-import java.lang.Runtime;
-import java.io.IOException;
-
-import lineageos.providers.LineageSettings;
-import org.lineageos.internal.util.FileUtils;
+import android.view.KeyEvent;
 
+import org.lineageos.settings.device.core.ActionDispatcher;
+import org.lineageos.settings.device.core.ActionRegistry;
+import org.lineageos.settings.device.core.ActionSink;
+import org.lineageos.settings.device.core.DeviceState;
+import org.lineageos.settings.device.core.GestureConfig;
+import org.lineageos.settings.device.core.GestureWakeLock;
+import org.lineageos.settings.device.core.TouchscreenGestureConstants;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.List;
 
-public abstract class HTCSuperGestures extends Service {
+public abstract class HTCSuperGestures extends Service implements ActionSink, DeviceState {
 
     private static final String GESTURE_WAKEUP_REASON = "gesture-wakeup";
+    private static final String SMS_DEFAULT_APPLICATION = "sms_default_application";
     protected static final String TAG = "GestureService";
 
-    private CameraManager mCameraManager;
-    private String mRearCameraId;
-    private Vibrator mVibrator;
-    private boolean mTorchEnabled;
+    /* Sysfs paths are resolved against this, so the nodes can be pointed elsewhere */
+    protected static final File SYSFS_ROOT = new File("/");
+
+    private HapticEngine mHaptics;
     protected AudioManager mAudioManager;
     protected Context mContext;
     protected PowerManager mPowerManager;
-    protected WakeLock mGestureWakeLock;
+    protected GestureWakeLock mGestureWakeLock;
+    protected KeyInjector mKeyInjector;
+    protected TorchController mTorchController;
+    protected LaunchIntentCache mLaunchIntents;
+    protected MediaControllerTracker mMediaControllers;
+    protected SettingsMirror mSettings;
+    protected ScreenStateProvider mScreenState;
+    protected GestureThread mGestureThread;
+    protected ActionDispatcher mActionDispatcher;
+
+    private AndroidConfigStore mConfigStore;
+    private long mConfigLoadNanos;
+    private long mPrefsAttachNanos;
+    private SharedPreferences mSharedPrefs;
 
     @Override
     public void onCreate() {
         super.onCreate();
 
         mContext = this;
+        mGestureThread = GestureThread.get();
 
         mAudioManager = (AudioManager) mContext.getSystemService(Context.AUDIO_SERVICE);
-        mCameraManager = (CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
-        mCameraManager.registerTorchCallback(new TorchModeCallback(), null);
+        // Everything that may block on a system service shares the one worker
+        mTorchController = new TorchController(mContext, mGestureThread.getWorker());
+        mTorchController.start();
+        mSettings = new SettingsMirror(getContentResolver(), mGestureThread.getWorker())
+                .register(Settings.Secure.DOUBLE_TAP_TO_WAKE)
+                .register(SMS_DEFAULT_APPLICATION);
+        mSettings.setListener(key -> {
+            if (SMS_DEFAULT_APPLICATION.equals(key)) {
+                mLaunchIntents.invalidate();
+            }
+        });
+        mLaunchIntents = createLaunchIntentCache();
+        mSettings.start();
+        mLaunchIntents.start();
         mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        mGestureWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "HtcGestureWakeLock");
-        mVibrator = (Vibrator) mContext.getSystemService(Context.VIBRATOR_SERVICE);
+        mScreenState = ScreenStateProvider.getInstance(mContext);
+        mGestureWakeLock = new AndroidGestureWakeLock(mPowerManager, "HtcGestureWakeLock");
+        mHaptics = new HapticEngine(mContext, mGestureThread.getWorker());
+        mHaptics.start();
+        mMediaControllers = new MediaControllerTracker(mContext, mGestureThread.getWorker(),
+                this::dispatchMediaKeyWithWakeLockToMediaSession);
+        mMediaControllers.start();
+        mKeyInjector = KeyInjector.getInstance();
+        mActionDispatcher = new ActionDispatcher(createActionRegistry(), this, this);
+        mActionDispatcher.setWorker(new AndroidGestureScheduler(mGestureThread.getWorker()));
+
+        // Services start from the config file, the preferences XML is only loaded once
+        // onCreate has returned, subclasses included
+        new Handler(Looper.getMainLooper()).post(
+                () -> mGestureThread.getWorker().post(this::attachPreferences));
+    }
+
+    /**
+     * Loads the preferences and listens to them from the worker, then catches up with
+     * anything that changed before the listener was in place.
+     */
+    private void attachPreferences() {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mConfigStore = new AndroidConfigStore(mSharedPrefs);
+        mSharedPrefs.registerOnSharedPreferenceChangeListener(mPrefListener);
+        final GestureConfig config = loadConfig(null);
+        mPrefsAttachNanos = SystemClock.elapsedRealtimeNanos() - start;
+        if (config != null) {
+            mGestureThread.getHandler().post(() -> onConfigChanged(config));
+        }
+    }
+
+    /**
+     * @return GestureConfig the configuration to start with, from the binary config file
+     * unless it still has to be migrated from the preferences
+     */
+    protected GestureConfig loadStartupConfig() {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        final GestureConfig config = GestureConfigStorage.load(mContext, GestureConfig.DEFAULT);
+        mConfigLoadNanos = SystemClock.elapsedRealtimeNanos() - start;
+        return config;
+    }
+
+    /**
+     * @return GestureConfig the current preferences, or fallback if they do not validate
+     */
+    protected GestureConfig loadConfig(GestureConfig fallback) {
+        try {
+            return GestureConfig.parse(mConfigStore);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Rejecting gesture preferences: " + e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Called on the gesture thread with a new, fully validated snapshot whenever a preference
+     * changes.
+     */
+    protected abstract void onConfigChanged(GestureConfig config);
+
+    private final Runnable mWakeUpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
+        }
+    };
+
+    private SharedPreferences.OnSharedPreferenceChangeListener mPrefListener =
+        new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                final GestureConfig config = loadConfig(null);
+                if (config != null) {
+                    mGestureThread.getHandler().post(() -> onConfigChanged(config));
+                    GestureConfigStorage.saveAsync(mContext);
+                }
+            }
+        };
+
+    /**
+     * Binder bound actions run on the gesture worker, key injection is already asynchronous.
+     */
+    private ActionRegistry createActionRegistry() {
+        final int offload = ActionRegistry.FLAG_OFFLOAD | ActionRegistry.FLAG_HAPTIC;
+        return new ActionRegistry()
+            .register(TouchscreenGestureConstants.ACTION_FLASHLIGHT, "toggle flashlight",
+                    offload, this::toggleFlashlight)
+            .register(TouchscreenGestureConstants.ACTION_CAMERA, "launch camera",
+                    offload, this::launchCamera)
+            .register(TouchscreenGestureConstants.ACTION_BROWSER, "launch browser",
+                    ActionRegistry.FLAG_NEEDS_WAKE | offload, this::launchBrowser)
+            .register(TouchscreenGestureConstants.ACTION_DIALER, "launch dialer",
+                    ActionRegistry.FLAG_NEEDS_WAKE | offload, this::launchDialer)
+            .register(TouchscreenGestureConstants.ACTION_EMAIL, "launch email",
+                    ActionRegistry.FLAG_NEEDS_WAKE | offload, this::launchEmail)
+            .register(TouchscreenGestureConstants.ACTION_MESSAGES, "launch messages",
+                    ActionRegistry.FLAG_NEEDS_WAKE | offload, this::launchMessages)
+            .register(TouchscreenGestureConstants.ACTION_PLAY_PAUSE_MUSIC, "play/pause music",
+                    offload, this::playPauseMusic)
+            .register(TouchscreenGestureConstants.ACTION_PREVIOUS_TRACK, "previous track",
+                    offload, this::previousTrack)
+            .register(TouchscreenGestureConstants.ACTION_NEXT_TRACK, "next track",
+                    offload, this::nextTrack)
+            .register(TouchscreenGestureConstants.ACTION_VOLUME_DOWN, "lower volume",
+                    offload, this::volumeDown)
+            .register(TouchscreenGestureConstants.ACTION_VOLUME_UP, "raise volume",
+                    offload, this::volumeUp)
+            .register(TouchscreenGestureConstants.ACTION_TAKE_SCREENSHOT, "take screenshot",
+                    ActionRegistry.FLAG_NEEDS_SCREEN_ON | ActionRegistry.FLAG_HAPTIC,
+                    this::takeScreenshot)
+            .register(TouchscreenGestureConstants.ACTION_TURN_SCREEN_ON_OFF, "toggle screen",
+                    ActionRegistry.FLAG_HAPTIC, this::turnScreenOnOff);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        // Behind attachPreferences() on the same worker
+        mGestureThread.getWorker().post(
+                () -> mSharedPrefs.unregisterOnSharedPreferenceChangeListener(mPrefListener));
+        mTorchController.stop();
+        mLaunchIntents.stop();
+        mSettings.stop();
+        mHaptics.stop();
+        mMediaControllers.stop();
     }
 
     @Override
@@ -110,18 +236,40 @@ public abstract class HTCSuperGestures extends Service {
         return null;
     }
 
-    protected class TorchModeCallback extends CameraManager.TorchCallback {
-        @Override
-        public void onTorchModeChanged(String cameraId, boolean enabled) {
-            if (!cameraId.equals(mRearCameraId)) return;
-            mTorchEnabled = enabled;
-        }
+    @Override
+    public void triggerCameraShutter() {
+        simulateKey(KeyEvent.KEYCODE_VOLUME_UP);
+    }
 
-        @Override
-        public void onTorchModeUnavailable(String cameraId) {
-            if (!cameraId.equals(mRearCameraId)) return;
-            mTorchEnabled = false;
-        }
+    @Override
+    public void wakeUp() {
+        // Queued ahead of the action that needs it, the worker runs both in order
+        mGestureThread.getWorker().post(mWakeUpRunnable);
+    }
+
+    @Override
+    public void hapticFeedback() {
+        doHapticFeedback();
+    }
+
+    @Override
+    public boolean isScreenOn() {
+        return mScreenState.isScreenOn();
+    }
+
+    @Override
+    public boolean isRingerSilent() {
+        return mHaptics.isRingerSilent();
+    }
+
+    @Override
+    public boolean isCameraInForeground() {
+        return false;
+    }
+
+    @Override
+    public boolean isDoubleTapEnabled() {
+        return mSettings.getInt(Settings.Secure.DOUBLE_TAP_TO_WAKE, 0) != 0;
     }
 
     protected void launchCamera() {
@@ -130,59 +278,67 @@ public abstract class HTCSuperGestures extends Service {
                 Manifest.permission.STATUS_BAR_SERVICE);
     }
 
+    private LaunchIntentCache createLaunchIntentCache() {
+        return new LaunchIntentCache(mContext, mGestureThread.getWorker())
+            .register(TouchscreenGestureConstants.ACTION_BROWSER,
+                    () -> getLaunchableIntent(new Intent(Intent.ACTION_VIEW, Uri.parse("http:"))))
+            .register(TouchscreenGestureConstants.ACTION_EMAIL,
+                    () -> getLaunchableIntent(
+                            new Intent(Intent.ACTION_VIEW, Uri.parse("mailto:"))))
+            .register(TouchscreenGestureConstants.ACTION_MESSAGES,
+                    this::getDefaultMessagesIntent);
+    }
+
     protected void launchBrowser() {
-        mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
-        final Intent intent = getLaunchableIntent(
-                new Intent(Intent.ACTION_VIEW, Uri.parse("http:")));
-        startActivitySafely(intent);
+        startActivitySafely(mLaunchIntents.get(TouchscreenGestureConstants.ACTION_BROWSER));
     }
 
     protected void launchDialer() {
-        mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
         final Intent intent = new Intent(Intent.ACTION_DIAL, null);
         startActivitySafely(intent);
     }
 
     protected void launchEmail() {
-        mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
-        final Intent intent = getLaunchableIntent(
-                new Intent(Intent.ACTION_VIEW, Uri.parse("mailto:")));
-        startActivitySafely(intent);
+        startActivitySafely(mLaunchIntents.get(TouchscreenGestureConstants.ACTION_EMAIL));
     }
 
     protected void launchMessages() {
-        mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
-        final String defaultApplication = Settings.Secure.getString(
-                mContext.getContentResolver(), "sms_default_application");
-        final PackageManager pm = mContext.getPackageManager();
-        final Intent intent = pm.getLaunchIntentForPackage(defaultApplication);
+        final Intent intent = mLaunchIntents.get(TouchscreenGestureConstants.ACTION_MESSAGES);
         if (intent != null) {
             startActivitySafely(intent);
         }
     }
 
-    protected void toggleFlashlight() {
-        String rearCameraId = getRearCameraId();
-        if (rearCameraId != null) {
-            try {
-                mCameraManager.setTorchMode(rearCameraId, !mTorchEnabled);
-                mTorchEnabled = !mTorchEnabled;
-            } catch (CameraAccessException e) {
-                // Ignore
-            }
+    private Intent getDefaultMessagesIntent() {
+        final String defaultApplication = mSettings.getString(SMS_DEFAULT_APPLICATION);
+        if (defaultApplication == null) {
+            return null;
         }
+        return mContext.getPackageManager().getLaunchIntentForPackage(defaultApplication);
+    }
+
+    protected void toggleFlashlight() {
+        mTorchController.toggle();
+    }
+
+    protected void takeScreenshot() {
+        simulateKey(KeyEvent.KEYCODE_SYSRQ);
+    }
+
+    protected void turnScreenOnOff() {
+        simulateKey(KeyEvent.KEYCODE_POWER);
     }
 
     protected void playPauseMusic() {
-        dispatchMediaKeyWithWakeLockToMediaSession(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
+        mMediaControllers.send(MediaControllerTracker.COMMAND_PLAY_PAUSE);
     }
 
     protected void previousTrack() {
-        dispatchMediaKeyWithWakeLockToMediaSession(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
+        mMediaControllers.send(MediaControllerTracker.COMMAND_PREVIOUS);
     }
 
     protected void nextTrack() {
-        dispatchMediaKeyWithWakeLockToMediaSession(KeyEvent.KEYCODE_MEDIA_NEXT);
+        mMediaControllers.send(MediaControllerTracker.COMMAND_NEXT);
     }
 
     protected void volumeDown() {
@@ -223,29 +379,7 @@ public abstract class HTCSuperGestures extends Service {
     }
 
     protected void doHapticFeedback() {
-        if (mVibrator == null || !mVibrator.hasVibrator()) {
-            return;
-        }
-        mVibrator.vibrate(50);
-    }
-
-    protected String getRearCameraId() {
-        if (mRearCameraId == null) {
-            try {
-                for (final String cameraId : mCameraManager.getCameraIdList()) {
-                    final CameraCharacteristics characteristics =
-                            mCameraManager.getCameraCharacteristics(cameraId);
-                    final int orientation = characteristics.get(CameraCharacteristics.LENS_FACING);
-                    if (orientation == CameraCharacteristics.LENS_FACING_BACK) {
-                        mRearCameraId = cameraId;
-                        break;
-                    }
-                }
-            } catch (CameraAccessException e) {
-                // Ignore
-            }
-        }
-        return mRearCameraId;
+        mHaptics.play();
     }
 
     protected Intent getLaunchableIntent(Intent intent) {
@@ -257,5 +391,39 @@ public abstract class HTCSuperGestures extends Service {
         return pm.getLaunchIntentForPackage(resInfo.get(0).activityInfo.packageName);
     }
 
+    protected void simulateKey(int keyCode) {
+        mKeyInjector.inject(keyCode);
+    }
 
+    /**
+     * "export-journal" writes the journal's events to a trace file instead of dumping state.
+     */
+    @Override
+    protected final void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (args.length > 0 && "export-journal".equals(args[0])) {
+            GestureTracing.exportJournal(mContext, pw);
+            return;
+        }
+        dumpState(pw);
+    }
+
+    protected void dumpState(PrintWriter pw) {
+        pw.println("Startup config load: " + mConfigLoadNanos / 1000 + "us, preferences"
+                + " loaded after startup: " + mPrefsAttachNanos / 1000 + "us");
+        mKeyInjector.dump(pw);
+        pw.println("Settings:");
+        mSettings.dump(pw);
+        pw.println("Launch intents:");
+        mLaunchIntents.dump(pw);
+        pw.println("Torch:");
+        mTorchController.dump(pw);
+        pw.println("Haptics:");
+        mHaptics.dump(pw);
+        pw.println("Media:");
+        mMediaControllers.dump(pw);
+        pw.println("Screen state:");
+        mScreenState.dump(pw);
+        pw.println("Journal:");
+        GestureTracing.getJournal().dump(pw);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+
+import org.lineageos.settings.device.core.HapticCoalescer;
+
+import java.io.PrintWriter;
+
+/**
+ * Haptic feedback for the gesture services. The vibrator and the effect are resolved once,
+ * playback happens on the given worker, and a HapticCoalescer merges requests made while
+ * one is still queued or within MERGE_WINDOW_NS of the last playback. The ringer mode is
+ * followed through its broadcast, so the ringer check is a field read.
+ */
+public class HapticEngine {
+
+    private static final long FEEDBACK_DURATION_MS = 50;
+    // Requests this close together feel like one pulse anyway
+    private static final long MERGE_WINDOW_NS = 10 * 1000000L;
+
+    private final Context mContext;
+    private final Handler mWorker;
+    private final Vibrator mVibrator;
+    private final VibrationEffect mEffect;
+    private final AudioManager mAudioManager;
+
+    private final HapticCoalescer mCoalescer = new HapticCoalescer(MERGE_WINDOW_NS);
+    private volatile int mRingerMode = AudioManager.RINGER_MODE_NORMAL;
+
+    private final Runnable mPlayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCoalescer.onPlayed(SystemClock.elapsedRealtimeNanos());
+            mVibrator.vibrate(mEffect);
+        }
+    };
+
+    private final BroadcastReceiver mRingerReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mRingerMode = intent.getIntExtra(AudioManager.EXTRA_RINGER_MODE,
+                    AudioManager.RINGER_MODE_NORMAL);
+        }
+    };
+
+    /**
+     * @param worker where the vibrator is called
+     */
+    public HapticEngine(Context context, Handler worker) {
+        mContext = context;
+        mWorker = worker;
+        final Vibrator vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        mVibrator = vibrator != null && vibrator.hasVibrator() ? vibrator : null;
+        mEffect = VibrationEffect.createOneShot(FEEDBACK_DURATION_MS,
+                VibrationEffect.DEFAULT_AMPLITUDE);
+        mAudioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    public void start() {
+        mRingerMode = mAudioManager.getRingerMode();
+        mContext.registerReceiver(mRingerReceiver,
+                new IntentFilter(AudioManager.RINGER_MODE_CHANGED_ACTION));
+    }
+
+    public void stop() {
+        mContext.unregisterReceiver(mRingerReceiver);
+        mWorker.removeCallbacks(mPlayRunnable);
+    }
+
+    public boolean isRingerSilent() {
+        return mRingerMode == AudioManager.RINGER_MODE_SILENT;
+    }
+
+    /**
+     * Queues one feedback pulse, unless it merges into one queued or just played.
+     */
+    public void play() {
+        if (mVibrator == null) {
+            return;
+        }
+        if (mCoalescer.request(SystemClock.elapsedRealtimeNanos())) {
+            mWorker.post(mPlayRunnable);
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("  vibrator=" + (mVibrator != null) + " ringerMode=" + mRingerMode);
+        mCoalescer.dump(pw);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.hardware.input.InputManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.InputDevice;
+import android.view.KeyCharacterMap;
+import android.view.KeyEvent;
+
+import java.io.PrintWriter;
+
+/**
+ * Injects key presses for the gesture services from one long-lived worker thread.
+ *
+ * Requests go into a small bounded FIFO and are injected in order as down/up pairs through
+ * the input manager without waiting for the dispatch to finish. The pairs come from the
+ * KeyEvent pool, so nothing is allocated per key once the pool is warm.
+ */
+public class KeyInjector {
+
+    private static final String TAG = "KeyInjector";
+
+    private static final int QUEUE_CAPACITY = 16;
+
+    private static KeyInjector sInstance;
+
+    private final InputManager mInputManager;
+
+    private final Object mLock = new Object();
+    private final int[] mKeyCodes = new int[QUEUE_CAPACITY];
+    private final long[] mEnqueueTimes = new long[QUEUE_CAPACITY];
+    private int mHead;
+    private int mSize;
+
+    // Counters, guarded by mLock
+    private long mEnqueued;
+    private long mInjected;
+    private long mDropped;
+    private long mFailed;
+    private int mMaxQueueDepth;
+    private long mTotalLatencyNs;
+    private long mMaxLatencyNs;
+
+    public static synchronized KeyInjector getInstance() {
+        if (sInstance == null) {
+            sInstance = new KeyInjector(InputManager.getInstance());
+        }
+        return sInstance;
+    }
+
+    private KeyInjector(InputManager inputManager) {
+        mInputManager = inputManager;
+        Thread worker = new Thread(mWorker, TAG);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues a full key press.
+     *
+     * @return boolean false if the queue was full and the key was dropped
+     */
+    public boolean inject(int keyCode) {
+        synchronized (mLock) {
+            if (mSize == QUEUE_CAPACITY) {
+                mDropped++;
+                return false;
+            }
+            final int tail = (mHead + mSize) % QUEUE_CAPACITY;
+            mKeyCodes[tail] = keyCode;
+            mEnqueueTimes[tail] = SystemClock.elapsedRealtimeNanos();
+            mSize++;
+            mEnqueued++;
+            if (mSize > mMaxQueueDepth) {
+                mMaxQueueDepth = mSize;
+            }
+            mLock.notify();
+        }
+        return true;
+    }
+
+    private final Runnable mWorker = new Runnable() {
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_FOREGROUND);
+            while (true) {
+                final int keyCode;
+                final long enqueueTime;
+                synchronized (mLock) {
+                    while (mSize == 0) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            // Keep serving
+                        }
+                    }
+                    keyCode = mKeyCodes[mHead];
+                    enqueueTime = mEnqueueTimes[mHead];
+                    mHead = (mHead + 1) % QUEUE_CAPACITY;
+                    mSize--;
+                }
+
+                final boolean injected = injectKeyPair(keyCode);
+                final long latency = SystemClock.elapsedRealtimeNanos() - enqueueTime;
+
+                synchronized (mLock) {
+                    if (injected) {
+                        mInjected++;
+                        mTotalLatencyNs += latency;
+                        if (latency > mMaxLatencyNs) {
+                            mMaxLatencyNs = latency;
+                        }
+                    } else {
+                        mFailed++;
+                    }
+                }
+            }
+        }
+    };
+
+    private boolean injectKeyPair(int keyCode) {
+        final long now = SystemClock.uptimeMillis();
+        return injectKey(now, KeyEvent.ACTION_DOWN, keyCode)
+                && injectKey(now, KeyEvent.ACTION_UP, keyCode);
+    }
+
+    private boolean injectKey(long downTime, int action, int keyCode) {
+        final KeyEvent event = KeyEvent.obtain(downTime, SystemClock.uptimeMillis(), action,
+                keyCode, 0, 0, KeyCharacterMap.VIRTUAL_KEYBOARD, 0, KeyEvent.FLAG_FROM_SYSTEM,
+                InputDevice.SOURCE_KEYBOARD, null);
+        try {
+            if (!mInputManager.injectInputEvent(event,
+                    InputManager.INJECT_INPUT_EVENT_MODE_ASYNC)) {
+                Log.w(TAG, "Failed to inject " + KeyEvent.keyCodeToString(keyCode));
+                return false;
+            }
+            return true;
+        } finally {
+            event.recycle();
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            pw.println("KeyInjector:");
+            pw.println("  queue depth: " + mSize + " (max " + mMaxQueueDepth
+                    + " of " + QUEUE_CAPACITY + ")");
+            pw.println("  enqueued: " + mEnqueued + " injected: " + mInjected
+                    + " dropped: " + mDropped + " failed: " + mFailed);
+            if (mInjected > 0) {
+                pw.println("  injection latency: avg " + (mTotalLatencyNs / mInjected / 1000)
+                        + " us, max " + (mMaxLatencyNs / 1000) + " us");
+            }
+        }
+    }
+}
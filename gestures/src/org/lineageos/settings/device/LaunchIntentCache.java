@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+/**
+ * Launch intents for the gesture actions, resolved once and kept until a package or a
+ * preferred activity changes. Other inputs a resolver depends on are the owner's to watch:
+ * HTCSuperGestures calls invalidate() when its SettingsMirror sees the default SMS app
+ * change. Resolution happens on the given handler at start and after every invalidation, so
+ * a gesture normally goes straight to startActivityAsUser.
+ */
+public class LaunchIntentCache {
+
+    public interface Resolver {
+        /**
+         * @return Intent the launch intent, or null if nothing can handle the action
+         */
+        Intent resolve();
+    }
+
+    // Stands in for a cached "nothing to launch"
+    private static final Intent NONE = new Intent();
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final SparseArray<Resolver> mResolvers = new SparseArray<>();
+
+    private final Object mLock = new Object();
+    private final SparseArray<Intent> mIntents = new SparseArray<>();
+    private int mGeneration;
+    private int mHits;
+    private int mMisses;
+    private int mInvalidations;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    private final Runnable mWarmRunnable = new Runnable() {
+        @Override
+        public void run() {
+            for (int i = 0; i < mResolvers.size(); i++) {
+                get(mResolvers.keyAt(i));
+            }
+        }
+    };
+
+    /**
+     * @param handler where package broadcasts are received and intents resolved
+     */
+    public LaunchIntentCache(Context context, Handler handler) {
+        mContext = context;
+        mHandler = handler;
+    }
+
+    /**
+     * Registers how to resolve the intent for an action. Call before start().
+     */
+    public LaunchIntentCache register(int action, Resolver resolver) {
+        mResolvers.put(action, resolver);
+        return this;
+    }
+
+    public void start() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        mContext.registerReceiver(mPackageReceiver, filter, null, mHandler);
+        // Sent when the default browser or any other preferred activity changes
+        mContext.registerReceiver(mPackageReceiver,
+                new IntentFilter(Intent.ACTION_PREFERRED_ACTIVITY_CHANGED), null, mHandler);
+
+        mHandler.post(mWarmRunnable);
+    }
+
+    public void stop() {
+        mContext.unregisterReceiver(mPackageReceiver);
+        mHandler.removeCallbacks(mWarmRunnable);
+    }
+
+    /**
+     * @return Intent a copy of the cached launch intent, safe to add flags to, or null
+     */
+    public Intent get(int action) {
+        final int generation;
+        synchronized (mLock) {
+            final Intent cached = mIntents.get(action);
+            if (cached != null) {
+                mHits++;
+                return cached == NONE ? null : new Intent(cached);
+            }
+            mMisses++;
+            generation = mGeneration;
+        }
+        final Resolver resolver = mResolvers.get(action);
+        final Intent intent = resolver != null ? resolver.resolve() : null;
+        synchronized (mLock) {
+            // Something changed while resolving, do not cache a stale answer
+            if (generation == mGeneration) {
+                mIntents.put(action, intent != null ? intent : NONE);
+            }
+        }
+        return intent != null ? new Intent(intent) : null;
+    }
+
+    public void invalidate() {
+        synchronized (mLock) {
+            mIntents.clear();
+            mGeneration++;
+            mInvalidations++;
+        }
+        mHandler.removeCallbacks(mWarmRunnable);
+        mHandler.post(mWarmRunnable);
+    }
+
+    public void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            pw.println("  hits=" + mHits + " misses=" + mMisses
+                    + " invalidations=" + mInvalidations);
+            for (int i = 0; i < mIntents.size(); i++) {
+                final Intent intent = mIntents.valueAt(i);
+                pw.println("  " + mIntents.keyAt(i) + ": "
+                        + (intent == NONE ? "none" : intent.getComponent()));
+            }
+        }
+    }
+}
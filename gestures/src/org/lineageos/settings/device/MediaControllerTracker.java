@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.Context;
+import android.media.session.MediaController;
+import android.media.session.MediaSessionManager;
+import android.media.session.PlaybackState;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.KeyEvent;
+
+import org.lineageos.settings.device.core.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Sends media gestures straight to the transport controls of the active media session.
+ * The session is tracked through active session changes, so a gesture costs one call on a
+ * controller already at hand. Media key routing is kept as the fallback for when no session
+ * is active.
+ */
+public class MediaControllerTracker {
+
+    public interface KeyFallback {
+        void sendMediaKey(int keyCode);
+    }
+
+    public static final int COMMAND_PLAY_PAUSE = 0;
+    public static final int COMMAND_PREVIOUS = 1;
+    public static final int COMMAND_NEXT = 2;
+
+    private static final String[] COMMAND_NAMES = { "play/pause", "previous", "next" };
+    private static final int[] COMMAND_KEYCODES = {
+        KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE,
+        KeyEvent.KEYCODE_MEDIA_PREVIOUS,
+        KeyEvent.KEYCODE_MEDIA_NEXT,
+    };
+
+    private static final int PATH_SESSION = 0;
+    private static final int PATH_KEY = 1;
+
+    private final MediaSessionManager mSessionManager;
+    private final Handler mHandler;
+    private final KeyFallback mFallback;
+    private final LatencyHistogram[][] mLatency =
+            new LatencyHistogram[COMMAND_NAMES.length][2];
+
+    private volatile MediaController mActive;
+
+    private final MediaSessionManager.OnActiveSessionsChangedListener mSessionsListener =
+            new MediaSessionManager.OnActiveSessionsChangedListener() {
+        @Override
+        public void onActiveSessionsChanged(List<MediaController> controllers) {
+            mActive = pickActive(controllers);
+        }
+    };
+
+    /**
+     * @param handler where session changes are handled
+     */
+    public MediaControllerTracker(Context context, Handler handler, KeyFallback fallback) {
+        mSessionManager = (MediaSessionManager)
+                context.getSystemService(Context.MEDIA_SESSION_SERVICE);
+        mHandler = handler;
+        mFallback = fallback;
+        for (LatencyHistogram[] histograms : mLatency) {
+            histograms[PATH_SESSION] = new LatencyHistogram();
+            histograms[PATH_KEY] = new LatencyHistogram();
+        }
+    }
+
+    public void start() {
+        mSessionManager.addOnActiveSessionsChangedListener(mSessionsListener, null, mHandler);
+        mActive = pickActive(mSessionManager.getActiveSessions(null));
+    }
+
+    public void stop() {
+        mSessionManager.removeOnActiveSessionsChangedListener(mSessionsListener);
+        mActive = null;
+    }
+
+    public void send(int command) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        final MediaController controller = mActive;
+        final int path;
+        if (controller != null) {
+            sendTransportControl(controller, command);
+            path = PATH_SESSION;
+        } else {
+            mFallback.sendMediaKey(COMMAND_KEYCODES[command]);
+            path = PATH_KEY;
+        }
+        mLatency[command][path].record(SystemClock.elapsedRealtimeNanos() - start);
+    }
+
+    private static void sendTransportControl(MediaController controller, int command) {
+        final MediaController.TransportControls controls = controller.getTransportControls();
+        switch (command) {
+            case COMMAND_PLAY_PAUSE:
+                if (isPlaying(controller)) {
+                    controls.pause();
+                } else {
+                    controls.play();
+                }
+                break;
+            case COMMAND_PREVIOUS:
+                controls.skipToPrevious();
+                break;
+            case COMMAND_NEXT:
+                controls.skipToNext();
+                break;
+        }
+    }
+
+    private static boolean isPlaying(MediaController controller) {
+        final PlaybackState state = controller.getPlaybackState();
+        return state != null && state.getState() == PlaybackState.STATE_PLAYING;
+    }
+
+    /**
+     * @return MediaController the first playing session, else the top one, the same order
+     * media keys are routed in
+     */
+    private static MediaController pickActive(List<MediaController> controllers) {
+        if (controllers == null || controllers.isEmpty()) {
+            return null;
+        }
+        for (MediaController controller : controllers) {
+            if (isPlaying(controller)) {
+                return controller;
+            }
+        }
+        return controllers.get(0);
+    }
+
+    public void dump(PrintWriter pw) {
+        final MediaController active = mActive;
+        pw.println("  active=" + (active != null ? active.getPackageName() : null));
+        for (int i = 0; i < COMMAND_NAMES.length; i++) {
+            dumpLatency(pw, COMMAND_NAMES[i] + " session", mLatency[i][PATH_SESSION]);
+            dumpLatency(pw, COMMAND_NAMES[i] + " key", mLatency[i][PATH_KEY]);
+        }
+    }
+
+    private static void dumpLatency(PrintWriter pw, String name, LatencyHistogram h) {
+        if (h.getCount() == 0) {
+            return;
+        }
+        pw.println(String.format("  %-20s n=%d p50=%dus p99=%dus max=%dus", name,
+                h.getCount(), h.getPercentile(50), h.getPercentile(99), h.getMax()));
+    }
+}
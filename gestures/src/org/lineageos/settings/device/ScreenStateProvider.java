@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Display;
+
+import org.lineageos.settings.device.core.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process wide screen state, driven by display state changes of the default display rather
+ * than by the ordered SCREEN_ON/OFF broadcasts, which can arrive long after the fact under
+ * load. The broadcasts are still received as a fallback and to measure how far ahead of
+ * them the display signal lands.
+ *
+ * Listeners run synchronously on the gesture thread; isScreenOn() may be called from any
+ * thread.
+ */
+public class ScreenStateProvider {
+
+    public interface Listener {
+        void onScreenStateChanged(boolean screenOn);
+    }
+
+    private static final String TAG = "ScreenStateProvider";
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static ScreenStateProvider sInstance;
+
+    private final Context mContext;
+    private final DisplayManager mDisplayManager;
+    private final Handler mHandler = GestureThread.get().getHandler();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean mScreenOn = true;
+    private volatile long mLastChangeTime;
+
+    // Gesture thread only
+    private final LatencyHistogram mBroadcastLag = new LatencyHistogram();
+    private boolean mAwaitingBroadcast;
+    private long mChangeTime;
+    private int mDisplayChanges;
+    private int mBroadcastChanges;
+
+    private final DisplayManager.DisplayListener mDisplayListener =
+            new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            if (displayId == Display.DEFAULT_DISPLAY) {
+                onDisplayStateChanged();
+            }
+        }
+    };
+
+    private final BroadcastReceiver mScreenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onScreenBroadcast(Intent.ACTION_SCREEN_ON.equals(intent.getAction()));
+        }
+    };
+
+    public static synchronized ScreenStateProvider getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ScreenStateProvider(context.getApplicationContext());
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    private ScreenStateProvider(Context context) {
+        mContext = context;
+        mDisplayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    }
+
+    private void start() {
+        mScreenOn = isOn(getDisplayState());
+        mDisplayManager.registerDisplayListener(mDisplayListener, mHandler);
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        mContext.registerReceiver(mScreenStateReceiver, filter, null, mHandler);
+    }
+
+    public boolean isScreenOn() {
+        return mScreenOn;
+    }
+
+    /**
+     * @return long elapsedRealtimeNanos() when the current screen state was first seen, 0 if
+     * it has not changed since the provider started
+     */
+    public long getLastChangeTime() {
+        return mLastChangeTime;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private int getDisplayState() {
+        final Display display = mDisplayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        return display != null ? display.getState() : Display.STATE_UNKNOWN;
+    }
+
+    /**
+     * Doze counts as off, matching when the SCREEN_OFF broadcast is sent.
+     */
+    private static boolean isOn(int displayState) {
+        return displayState == Display.STATE_ON || displayState == Display.STATE_VR
+                || displayState == Display.STATE_UNKNOWN;
+    }
+
+    private void onDisplayStateChanged() {
+        final boolean screenOn = isOn(getDisplayState());
+        if (screenOn == mScreenOn) {
+            return;
+        }
+        mDisplayChanges++;
+        mAwaitingBroadcast = true;
+        mChangeTime = SystemClock.elapsedRealtimeNanos();
+        setScreenOn(screenOn, mChangeTime);
+    }
+
+    private void onScreenBroadcast(boolean screenOn) {
+        if (screenOn == mScreenOn) {
+            if (mAwaitingBroadcast) {
+                final long lag = SystemClock.elapsedRealtimeNanos() - mChangeTime;
+                mBroadcastLag.record(lag);
+                Log.d(TAG, "Display state led the screen " + (screenOn ? "on" : "off")
+                        + " broadcast by " + lag / NANOS_PER_MILLI + "ms");
+            }
+            mAwaitingBroadcast = false;
+            return;
+        }
+        // The display listener missed this one
+        Log.w(TAG, "Screen " + (screenOn ? "on" : "off") + " seen by broadcast first");
+        mBroadcastChanges++;
+        mAwaitingBroadcast = false;
+        setScreenOn(screenOn, SystemClock.elapsedRealtimeNanos());
+    }
+
+    private void setScreenOn(boolean screenOn, long changeTime) {
+        mLastChangeTime = changeTime;
+        mScreenOn = screenOn;
+        for (Listener listener : mListeners) {
+            listener.onScreenStateChanged(screenOn);
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("  screenOn=" + mScreenOn + " displayChanges=" + mDisplayChanges
+                + " broadcastChanges=" + mBroadcastChanges);
+        pw.println(String.format("  broadcast lag: n=%d p50=%dms p90=%dms max=%dms",
+                mBroadcastLag.getCount(), mBroadcastLag.getPercentile(50) / 1000,
+                mBroadcastLag.getPercentile(90) / 1000, mBroadcastLag.getMax() / 1000));
+    }
+}
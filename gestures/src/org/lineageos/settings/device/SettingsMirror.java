@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.provider.Settings;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the Settings.Secure values the gesture path needs. Each key is loaded
+ * once on start and kept current by a ContentObserver, so readers never go through the
+ * content resolver. Register new keys before start().
+ */
+public class SettingsMirror {
+
+    public interface Listener {
+        void onSettingChanged(String key);
+    }
+
+    // ConcurrentHashMap cannot hold null
+    private static final String NULL = new String();
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+    private final ArrayList<String> mKeys = new ArrayList<>();
+    private final ArrayList<ContentObserver> mObservers = new ArrayList<>();
+    private final ConcurrentHashMap<String, String> mValues = new ConcurrentHashMap<>();
+    private Listener mListener;
+
+    /**
+     * @param handler where change notifications and the listener run
+     */
+    public SettingsMirror(ContentResolver resolver, Handler handler) {
+        mResolver = resolver;
+        mHandler = handler;
+    }
+
+    public SettingsMirror register(String key) {
+        mKeys.add(key);
+        return this;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void start() {
+        for (final String key : mKeys) {
+            final ContentObserver observer = new ContentObserver(mHandler) {
+                @Override
+                public void onChange(boolean selfChange, Uri uri) {
+                    load(key);
+                    final Listener listener = mListener;
+                    if (listener != null) {
+                        listener.onSettingChanged(key);
+                    }
+                }
+            };
+            mResolver.registerContentObserver(Settings.Secure.getUriFor(key), false, observer);
+            mObservers.add(observer);
+            load(key);
+        }
+    }
+
+    public void stop() {
+        for (ContentObserver observer : mObservers) {
+            mResolver.unregisterContentObserver(observer);
+        }
+        mObservers.clear();
+    }
+
+    public String getString(String key) {
+        final String value = mValues.get(key);
+        return value == NULL ? null : value;
+    }
+
+    public int getInt(String key, int def) {
+        final String value = getString(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private void load(String key) {
+        final String value = Settings.Secure.getString(mResolver, key);
+        mValues.put(key, value != null ? value : NULL);
+    }
+
+    public void dump(PrintWriter pw) {
+        for (final String key : mKeys) {
+            pw.println("  " + key + "=" + getString(key));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device;
+
+import android.content.Context;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.lineageos.settings.device.core.LatencyHistogram;
+
+import java.io.PrintWriter;
+
+/**
+ * Flashlight for the gesture services. The rear camera is looked up on the given handler as
+ * soon as the controller starts, and torch callbacks are handled there too, so a toggle on
+ * the gesture path is a single setTorchMode call based on the last reported state.
+ */
+public class TorchController {
+
+    private static final String TAG = "TorchController";
+
+    private final CameraManager mCameraManager;
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+    private String mRearCameraId;
+    private boolean mResolved;
+    private boolean mTorchEnabled;
+
+    private long mColdLatencyNs = -1;
+    private final LatencyHistogram mWarmLatency = new LatencyHistogram();
+
+    private final CameraManager.TorchCallback mTorchCallback = new CameraManager.TorchCallback() {
+        @Override
+        public void onTorchModeChanged(String cameraId, boolean enabled) {
+            synchronized (mLock) {
+                if (cameraId.equals(mRearCameraId)) {
+                    mTorchEnabled = enabled;
+                }
+            }
+        }
+
+        @Override
+        public void onTorchModeUnavailable(String cameraId) {
+            synchronized (mLock) {
+                if (cameraId.equals(mRearCameraId)) {
+                    mTorchEnabled = false;
+                }
+            }
+        }
+    };
+
+    private final Runnable mResolveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            getRearCameraId();
+        }
+    };
+
+    /**
+     * @param handler where the lookup and torch callbacks run, it may block on the camera
+     * service
+     */
+    public TorchController(Context context, Handler handler) {
+        mCameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        mHandler = handler;
+    }
+
+    public void start() {
+        mHandler.post(mResolveRunnable);
+        mCameraManager.registerTorchCallback(mTorchCallback, mHandler);
+    }
+
+    public void stop() {
+        mCameraManager.unregisterTorchCallback(mTorchCallback);
+        mHandler.removeCallbacks(mResolveRunnable);
+    }
+
+    /**
+     * Flips the torch of the rear camera. If the camera was not resolved yet, this is the
+     * cold path and does the lookup first. The camera service is only called outside mLock,
+     * so torch callbacks and dump() never wait on it.
+     */
+    public void toggle() {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        final boolean cold;
+        synchronized (mLock) {
+            cold = !mResolved;
+        }
+        final String cameraId = getRearCameraId();
+        if (cameraId == null) {
+            return;
+        }
+        final boolean enable;
+        synchronized (mLock) {
+            enable = !mTorchEnabled;
+        }
+        try {
+            mCameraManager.setTorchMode(cameraId, enable);
+        } catch (CameraAccessException e) {
+            Log.w(TAG, "Unable to toggle torch", e);
+            return;
+        }
+        final long latency = SystemClock.elapsedRealtimeNanos() - start;
+        synchronized (mLock) {
+            // The callback confirms it later; assume it worked until then
+            mTorchEnabled = enable;
+            if (cold) {
+                mColdLatencyNs = latency;
+            } else {
+                mWarmLatency.record(latency);
+            }
+        }
+    }
+
+    private String getRearCameraId() {
+        synchronized (mLock) {
+            if (mResolved) {
+                return mRearCameraId;
+            }
+        }
+        String rearCameraId = null;
+        try {
+            for (final String cameraId : mCameraManager.getCameraIdList()) {
+                final CameraCharacteristics characteristics =
+                        mCameraManager.getCameraCharacteristics(cameraId);
+                final Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                    rearCameraId = cameraId;
+                    break;
+                }
+            }
+        } catch (CameraAccessException e) {
+            // Try again on the next toggle
+            Log.w(TAG, "Unable to look up rear camera", e);
+            return null;
+        }
+        synchronized (mLock) {
+            if (!mResolved) {
+                mRearCameraId = rearCameraId;
+                mResolved = true;
+            }
+            return mRearCameraId;
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            pw.println("  camera=" + mRearCameraId + " enabled=" + mTorchEnabled);
+            pw.println("  cold=" + (mColdLatencyNs < 0 ? "n/a" : mColdLatencyNs / 1000 + "us")
+                    + " warm n=" + mWarmLatency.getCount()
+                    + " p50=" + mWarmLatency.getPercentile(50) + "us"
+                    + " p99=" + mWarmLatency.getPercentile(99) + "us");
+        }
+    }
+}
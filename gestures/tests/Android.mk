@@ -0,0 +1,17 @@
+LOCAL_PATH:= $(call my-dir)
+
+# Host tests for GestureHandlerCore. Run them with:
+#   java -cp $ANDROID_HOST_OUT/framework/GestureHandlerCoreTests.jar \
+#       org.junit.runner.JUnitCore org.lineageos.settings.device.core.<Name>Test
+
+include $(CLEAR_VARS)
+
+LOCAL_SRC_FILES := $(call all-java-files-under, src)
+LOCAL_MODULE := GestureHandlerCoreTests
+LOCAL_MODULE_TAGS := tests
+
+LOCAL_STATIC_JAVA_LIBRARIES := \
+    GestureHandlerCore-host \
+    junit-host
+
+include $(BUILD_HOST_JAVA_LIBRARY)
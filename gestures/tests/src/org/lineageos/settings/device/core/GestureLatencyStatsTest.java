@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GestureLatencyStatsTest {
+
+    private final TestBackend mBackend = new TestBackend();
+    private final VirtualScheduler mClock = new VirtualScheduler(0);
+    private final GestureLatencyStats mStats = new GestureLatencyStats(mClock, 0, "gesture");
+    private ActionDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        mDispatcher = mBackend.createDispatcher();
+        mDispatcher.setLatencyStats(mStats);
+    }
+
+    @Test
+    public void offloadedActionTimedOnWorker() {
+        mStats.onEvent(mClock.elapsedRealtimeNanos());
+        mStats.onClassified(0);
+        mDispatcher.dispatch(TouchscreenGestureConstants.ACTION_FLASHLIGHT);
+        assertEquals(0, dispatchStage().getCount());
+        assertEquals(0, actionStage().getCount());
+
+        mClock.advanceBy(5);
+        mBackend.worker.advanceBy(0);
+        assertEquals(1, mBackend.actions);
+        assertEquals(1, dispatchStage().getCount());
+        assertEquals(5000, dispatchStage().getMax());
+        assertEquals(1, actionStage().getCount());
+    }
+
+    @Test
+    public void queuedActionsKeepTheirOwnStart() {
+        mStats.onEvent(mClock.elapsedRealtimeNanos());
+        mStats.onClassified(0);
+        mDispatcher.dispatch(TouchscreenGestureConstants.ACTION_FLASHLIGHT);
+        mClock.advanceBy(3);
+        mStats.onEvent(mClock.elapsedRealtimeNanos());
+        mStats.onClassified(0);
+        mDispatcher.dispatch(TouchscreenGestureConstants.ACTION_FLASHLIGHT);
+
+        mClock.advanceBy(2);
+        mBackend.worker.advanceBy(0);
+        assertEquals(2, mBackend.actions);
+        assertEquals(2, dispatchStage().getCount());
+        assertEquals(5000, dispatchStage().getMax());
+        assertEquals(2, actionStage().getCount());
+    }
+
+    private LatencyHistogram dispatchStage() {
+        return mStats.getHistogram(0, GestureLatencyStats.STAGE_DISPATCH);
+    }
+
+    private LatencyHistogram actionStage() {
+        return mStats.getHistogram(0, GestureLatencyStats.STAGE_ACTION);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HapticCoalescerTest {
+
+    private static final long WINDOW_NS = 10 * 1000000L;
+
+    private final HapticCoalescer mCoalescer = new HapticCoalescer(WINDOW_NS);
+
+    @Test
+    public void firstRequestPlays() {
+        // Early in boot the clock is small, it must not look like a recent playback
+        assertTrue(mCoalescer.request(1000));
+    }
+
+    @Test
+    public void requestWhileQueuedMerges() {
+        assertTrue(mCoalescer.request(0));
+        assertFalse(mCoalescer.request(1000));
+        assertEquals(1, mCoalescer.getMerged());
+    }
+
+    @Test
+    public void requestWithinWindowMerges() {
+        assertTrue(mCoalescer.request(0));
+        mCoalescer.onPlayed(0);
+        assertFalse(mCoalescer.request(WINDOW_NS - 1));
+    }
+
+    @Test
+    public void requestAfterWindowPlays() {
+        assertTrue(mCoalescer.request(0));
+        mCoalescer.onPlayed(0);
+        assertTrue(mCoalescer.request(WINDOW_NS));
+        mCoalescer.onPlayed(WINDOW_NS);
+        assertEquals(2, mCoalescer.getPlayed());
+        assertEquals(0, mCoalescer.getMerged());
+    }
+}
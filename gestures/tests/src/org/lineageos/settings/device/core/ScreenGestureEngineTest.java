@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScreenGestureEngineTest {
+
+    private static final long COOLDOWN = ScreenGestureEngine.GESTURE_COOLDOWN_NS;
+
+    private final TestBackend mBackend = new TestBackend();
+    private final ReplaySensorSource mSensor = new ReplaySensorSource();
+    private ScreenGestureEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mBackend.screenOn = false;
+        mEngine = new ScreenGestureEngine(mSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend);
+        mEngine.start(new GestureConfig.Builder()
+                .setSwipeUpAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .build());
+        mEngine.arm();
+    }
+
+    @Test
+    public void gestureRejectedWhileActionInFlight() {
+        swipeUp(0);
+        assertEquals(1, mEngine.getAcceptedCount());
+        assertEquals(0, mBackend.actions);
+
+        // Past the cooldown, but the worker has not run the first action yet
+        swipeUp(2 * COOLDOWN);
+        assertEquals(1, mEngine.getFilteredCount());
+
+        mBackend.worker.advanceBy(0);
+        assertEquals(1, mBackend.actions);
+        swipeUp(3 * COOLDOWN);
+        assertEquals(2, mEngine.getAcceptedCount());
+    }
+
+    @Test
+    public void cooldownCountsFromTheEvent() {
+        swipeUp(0);
+        mBackend.worker.advanceBy(0);
+
+        swipeUp(COOLDOWN - 1);
+        assertEquals(1, mEngine.getFilteredCount());
+        swipeUp(COOLDOWN);
+        assertEquals(2, mEngine.getAcceptedCount());
+    }
+
+    @Test
+    public void inlineGestureOnlyCoolsDown() {
+        mSensor.deliver(0, ScreenGestureEngine.DOUBLE_TAP, 0);
+        assertEquals(1, mBackend.wakeUps);
+
+        mSensor.deliver(COOLDOWN, ScreenGestureEngine.DOUBLE_TAP, 0);
+        assertEquals(2, mBackend.wakeUps);
+        assertEquals(0, mEngine.getFilteredCount());
+    }
+
+    private void swipeUp(long timestamp) {
+        mSensor.deliver(timestamp, ScreenGestureEngine.SWIPE_UP, 0);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SqueezeCalibratorTest {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private SqueezeCalibrator mCalibrator;
+    private boolean mCalibrated;
+    private int mForce;
+    private long mTime;
+
+    @Before
+    public void setUp() {
+        mCalibrator = new SqueezeCalibrator(new SqueezeCalibrator.Listener() {
+            @Override
+            public void onCalibrated(int squeezeForce, int longSqueezeDurationMs) {
+                mCalibrated = true;
+                mForce = squeezeForce;
+            }
+        });
+    }
+
+    @Test
+    public void dropOutsLowerForceOneStep() {
+        feedDropOuts(config(150));
+        assertEquals(140, mForce);
+    }
+
+    @Test
+    public void dropOutsStopAtMinimum() {
+        feedDropOuts(config(SqueezeCalibrator.FORCE_MIN + 5));
+        assertEquals(SqueezeCalibrator.FORCE_MIN, mForce);
+    }
+
+    @Test
+    public void dropOutsNeverRaiseForceBelowMinimum() {
+        feedDropOuts(config(20));
+        assertFalse(mCalibrated);
+    }
+
+    @Test
+    public void accidentalPressesRaiseForceBelowMinimumOneStep() {
+        feedAccidentalPresses(config(20));
+        assertEquals(30, mForce);
+    }
+
+    @Test
+    public void accidentalPressesStopAtMaximum() {
+        feedAccidentalPresses(config(SqueezeCalibrator.FORCE_MAX - 5));
+        assertEquals(SqueezeCalibrator.FORCE_MAX, mForce);
+    }
+
+    private static GestureConfig config(int force) {
+        return new GestureConfig.Builder()
+                .setSqueezeForce(force)
+                .setSqueezeCalibration(GestureConfig.CALIBRATION_APPLY)
+                .build();
+    }
+
+    /* A quarter of the window cancelled by the hub before the long duration */
+    private void feedDropOuts(GestureConfig config) {
+        for (int i = 0; i < SqueezeCalibrator.WINDOW_PRESSES; i++) {
+            press(config, i % 4 == 0 ? 300 : 800, i % 4 == 0 ? 3.0f : 2.0f);
+        }
+    }
+
+    /* Half of the window released before a squeeze counts */
+    private void feedAccidentalPresses(GestureConfig config) {
+        for (int i = 0; i < SqueezeCalibrator.WINDOW_PRESSES; i++) {
+            press(config, i % 2 == 0 ? 50 : 800, 2.0f);
+        }
+    }
+
+    private void press(GestureConfig config, long durationMs, float end) {
+        mCalibrator.onSensorEvent(mTime, 1.0f, config);
+        mTime += durationMs * NANOS_PER_MILLI;
+        mCalibrator.onSensorEvent(mTime, end, config);
+        mTime += 1000 * NANOS_PER_MILLI;
+    }
+}
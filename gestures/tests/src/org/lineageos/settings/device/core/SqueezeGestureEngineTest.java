@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SqueezeGestureEngineTest {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final TestBackend mBackend = new TestBackend();
+    private final VirtualScheduler mScheduler = new VirtualScheduler(0);
+    private final ReplaySensorSource mSensor = new ReplaySensorSource();
+    private SqueezeGestureEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mBackend.screenOn = false;
+        mEngine = new SqueezeGestureEngine(mSensor, mBackend, mBackend.createDispatcher(),
+                mBackend, mBackend, mBackend, mScheduler);
+        mEngine.start(new GestureConfig.Builder()
+                .setShortSqueezeAction(TouchscreenGestureConstants.ACTION_FLASHLIGHT)
+                .build());
+    }
+
+    @Test
+    public void wakeLockHeldUntilOffloadedActionRan() {
+        shortSqueeze();
+        assertEquals(0, mBackend.actions);
+        assertTrue(mBackend.isHeld());
+
+        mBackend.worker.advanceBy(0);
+        assertEquals(1, mBackend.actions);
+        // The completion comes back through the gesture thread
+        assertTrue(mBackend.isHeld());
+        mScheduler.advanceBy(0);
+        assertFalse(mBackend.isHeld());
+    }
+
+    @Test
+    public void stopReleasesWakeLockWithActionInFlight() {
+        shortSqueeze();
+        mEngine.stop();
+        assertFalse(mBackend.isHeld());
+
+        mBackend.worker.advanceBy(0);
+        mScheduler.advanceBy(0);
+        assertFalse(mBackend.isHeld());
+    }
+
+    private void shortSqueeze() {
+        final long now = mScheduler.elapsedRealtimeNanos();
+        mSensor.deliver(now, 1.0f, 0);
+        mScheduler.advanceBy(200);
+        mSensor.deliver(now + 200 * NANOS_PER_MILLI, 2.0f, 0);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.device.core;
+
+/**
+ * Platform stand-in for the engine tests. Offloaded actions go to a VirtualScheduler worker,
+ * so a test decides when they run.
+ */
+public class TestBackend implements ActionSink, DeviceState, GestureWakeLock, SysfsNode {
+
+    public final VirtualScheduler worker = new VirtualScheduler(0);
+
+    public boolean screenOn = true;
+    public boolean doubleTapEnabled = true;
+
+    public int actions;
+    public int wakeUps;
+    public int haptics;
+
+    private boolean mHeld;
+
+    private final Runnable mCountAction = new Runnable() {
+        @Override
+        public void run() {
+            actions++;
+        }
+    };
+
+    /**
+     * @return ActionDispatcher with every action id bound to a counter and offloaded to
+     * worker, the way HTCSuperGestures registers its binder bound actions
+     */
+    public ActionDispatcher createDispatcher() {
+        ActionRegistry registry = new ActionRegistry();
+        for (int id = TouchscreenGestureConstants.ACTION_FLASHLIGHT;
+                id <= TouchscreenGestureConstants.ACTION_TURN_SCREEN_ON_OFF; id++) {
+            registry.register(id, "action " + id, ActionRegistry.FLAG_OFFLOAD, mCountAction);
+        }
+        ActionDispatcher dispatcher = new ActionDispatcher(registry, this, this);
+        dispatcher.setWorker(worker);
+        return dispatcher;
+    }
+
+    @Override
+    public void triggerCameraShutter() {
+    }
+
+    @Override
+    public void wakeUp() {
+        wakeUps++;
+    }
+
+    @Override
+    public void hapticFeedback() {
+        haptics++;
+    }
+
+    @Override
+    public boolean isScreenOn() {
+        return screenOn;
+    }
+
+    @Override
+    public boolean isRingerSilent() {
+        return false;
+    }
+
+    @Override
+    public boolean isCameraInForeground() {
+        return false;
+    }
+
+    @Override
+    public boolean isDoubleTapEnabled() {
+        return doubleTapEnabled;
+    }
+
+    @Override
+    public void acquire(long timeoutMs) {
+        mHeld = true;
+    }
+
+    @Override
+    public void release() {
+        mHeld = false;
+    }
+
+    @Override
+    public boolean isHeld() {
+        return mHeld;
+    }
+
+    @Override
+    public boolean write(String value) {
+        return true;
+    }
+
+    @Override
+    public String read() {
+        return null;
+    }
+}
@@ -17,23 +17,47 @@
 
 package org.lineageos.hardware;
 
+import android.os.FileObserver;
+
 import org.lineageos.internal.util.FileUtils;
+
 /**
  * Glove mode / high touch sensitivity
+ *
+ * The support probe and the current state are kept in memory. The state is refreshed by
+ * setEnabled and re-read whenever the node is modified. Every write and modification bumps
+ * a generation, and a read is only cached if the generation did not move while it ran, so a
+ * value read just before a change never outlives it.
  */
 public class HighTouchSensitivity {
     private static final String GLOVE_FILE = "/sys/android_touch/glove_setting";
     private static final String ENABLED = "1";
     private static final String DISABLED = "0";
 
+    private static final int UNKNOWN = -1;
+    private static final int NO = 0;
+    private static final int YES = 1;
+
+    private static volatile int sSupported = UNKNOWN;
+    private static volatile int sEnabled = UNKNOWN;
+
+    private static final Object sLock = new Object();
+    private static int sGeneration;
+
+    // Kept in a static field, the observer stops watching once it is collected
+    private static FileObserver sObserver;
+
     /**
      * Whether device supports high touch sensitivity.
      *
      * @return boolean Supported devices must return always true
      */
     public static boolean isSupported() {
-        return FileUtils.isFileReadable(GLOVE_FILE) &&
-                FileUtils.isFileWritable(GLOVE_FILE);
+        int supported = sSupported;
+        if (supported == UNKNOWN) {
+            supported = probe();
+        }
+        return supported == YES;
     }
 
     /**
@@ -43,7 +67,11 @@ public class HighTouchSensitivity {
      * or the operation failed while reading the status; true in any other case.
      */
     public static boolean isEnabled() {
-        return FileUtils.readOneLine(GLOVE_FILE).equals(ENABLED);
+        int enabled = sEnabled;
+        if (enabled == UNKNOWN) {
+            enabled = isSupported() ? refresh() : read();
+        }
+        return enabled == YES;
     }
 
     /**
@@ -54,6 +82,60 @@ public class HighTouchSensitivity {
      * failed; true in any other case.
      */
     public static boolean setEnabled(boolean status) {
-        return FileUtils.writeLine(GLOVE_FILE, status ? ENABLED : DISABLED);
+        final boolean written = FileUtils.writeLine(GLOVE_FILE, status ? ENABLED : DISABLED);
+        final int enabled = written && isSupported() ? (status ? YES : NO) : UNKNOWN;
+        synchronized (sLock) {
+            sGeneration++;
+            sEnabled = enabled;
+        }
+        return written;
+    }
+
+    /**
+     * Reads the node and caches the result, unless it was written or modified meanwhile.
+     */
+    private static int refresh() {
+        final int generation;
+        synchronized (sLock) {
+            generation = sGeneration;
+        }
+        final int enabled = read();
+        synchronized (sLock) {
+            if (enabled != UNKNOWN && generation == sGeneration) {
+                sEnabled = enabled;
+            }
+        }
+        return enabled;
+    }
+
+    private static int read() {
+        final String value = FileUtils.readOneLine(GLOVE_FILE);
+        if (value == null) {
+            return UNKNOWN;
+        }
+        return value.equals(ENABLED) ? YES : NO;
+    }
+
+    private static synchronized int probe() {
+        if (sSupported == UNKNOWN) {
+            final boolean supported = FileUtils.isFileReadable(GLOVE_FILE) &&
+                    FileUtils.isFileWritable(GLOVE_FILE);
+            if (supported) {
+                sObserver = new FileObserver(GLOVE_FILE, FileObserver.MODIFY) {
+                    @Override
+                    public void onEvent(int event, String path) {
+                        synchronized (sLock) {
+                            sGeneration++;
+                            sEnabled = UNKNOWN;
+                        }
+                        // Also confirms the state setEnabled stored for its own write
+                        refresh();
+                    }
+                };
+                sObserver.startWatching();
+            }
+            sSupported = supported ? YES : NO;
+        }
+        return sSupported;
     }
 }